@@ -0,0 +1,251 @@
+package net.shrimpworks.unreal.dependencies;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import net.shrimpworks.unreal.packages.entities.Import;
+
+/**
+ * The set of files needed to redistribute a collection of packages (for
+ * example a map rotation for a server), along with all the packages they
+ * depend on.
+ * <p>
+ * Each required package is included only once, even if depended upon by
+ * several of the requested packages. Where a package is contained within a
+ * umod, the umod is the file to be distributed.
+ * <p>
+ * Where a package is available from several files, a file already needed
+ * for another package is preferred, so that the fewest files are
+ * distributed.
+ */
+public class Bundle {
+
+	private static final Comparator<UnrealPackage> PREFERRED = Comparator
+		.comparing((UnrealPackage p) -> p.umodFile != null) // prefer plain files over umod contents
+		.thenComparing(p -> p.path == null ? "" : p.path.toString());
+
+	/**
+	 * Packages to be distributed, ordered by name.
+	 */
+	public final List<Entry> packages;
+
+	/**
+	 * Names of packages required, but which could not be found.
+	 */
+	public final Set<String> missing;
+
+	public Bundle(List<Entry> packages, Set<String> missing) {
+		this.packages = packages;
+		this.missing = missing;
+	}
+
+	/**
+	 * Compute the bundle for a set of packages, from the packages known to a
+	 * resolver.
+	 * <p>
+	 * Uses the resolver's {@link DependencyResolver#graph()}, so the packages
+	 * are not re-read. Requested packages need not be known to the resolver
+	 * themselves.
+	 *
+	 * @param resolver resolver holding the available packages
+	 * @param packages the packages to bundle
+	 * @param exclude  filter matching package names which should not be
+	 *                 included, such as those shipped with the game
+	 * @return the bundle
+	 */
+	public static Bundle of(DependencyResolver resolver, Collection<UnrealPackage> packages, Predicate<String> exclude) {
+		DependencyGraph graph = resolver.graph();
+
+		Map<String, Entry> entries = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		Set<String> missing = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		IntStream.Builder roots = IntStream.builder();
+
+		for (UnrealPackage pkg : packages) {
+			if (exclude.test(pkg.name)) continue;
+
+			int node = graph.node(pkg.name);
+			if (node != NameTable.NOT_FOUND && !graph.missing(node) && known(resolver, pkg)) {
+				roots.add(node);
+			} else {
+				// not a known package, or a different file with the same name, so start from its own imports
+				if (pkg.path != null) entries.putIfAbsent(pkg.name, new Entry(pkg.name, pkg.path, pkg.umodFile));
+				for (Import i : pkg.pkg.packageImports()) {
+					if (exclude.test(i.name.name)) continue;
+					int dep = graph.node(i.name.name);
+					if (dep == NameTable.NOT_FOUND) missing.add(i.name.name);
+					else roots.add(dep);
+				}
+			}
+		}
+
+		Map<String, List<UnrealPackage>> sources = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		BitSet required = graph.closure(n -> !exclude.test(graph.name(n)), roots.build().toArray());
+		for (int n = required.nextSetBit(0); n >= 0; n = required.nextSetBit(n + 1)) {
+			if (graph.missing(n)) {
+				missing.add(graph.name(n));
+				continue;
+			}
+			List<UnrealPackage> found = resolver.findPackages(graph.name(n)).stream()
+												.filter(p -> p.path != null)
+												.sorted(PREFERRED)
+												.toList();
+			if (!found.isEmpty()) sources.putIfAbsent(graph.name(n), found);
+		}
+		select(sources, entries);
+
+		return new Bundle(List.copyOf(entries.values()), Collections.unmodifiableSet(missing));
+	}
+
+	/**
+	 * Choose the file each package will be distributed in, minimising the
+	 * number of distinct files.
+	 * <p>
+	 * Packages only available within umods must bring in one of those umods,
+	 * so those are chosen first. Every other package then reuses a file which
+	 * has already been chosen if possible, before falling back to the most
+	 * preferred source.
+	 *
+	 * @param sources possible sources for each package, in order of preference
+	 * @param entries chosen sources, by package name; packages already present
+	 *                are not changed
+	 */
+	static void select(Map<String, List<UnrealPackage>> sources, Map<String, Entry> entries) {
+		Set<Path> chosen = new HashSet<>();
+		entries.values().forEach(e -> chosen.add(e.path));
+
+		// packages only available in a single umod force that umod in
+		sources.forEach((name, found) -> {
+			if (found.stream().allMatch(p -> p.umodFile != null) && found.stream().map(p -> p.path).distinct().count() == 1) {
+				choose(name, found, chosen, entries);
+			}
+		});
+
+		// then those only available in several umods, then everything else
+		sources.forEach((name, found) -> {
+			if (found.stream().allMatch(p -> p.umodFile != null)) choose(name, found, chosen, entries);
+		});
+		sources.forEach((name, found) -> choose(name, found, chosen, entries));
+	}
+
+	/**
+	 * @return the distinct files to be distributed, ordered by path
+	 */
+	public Set<Path> files() {
+		Set<Path> files = new LinkedHashSet<>();
+		packages.stream().map(e -> e.path).sorted().forEach(files::add);
+		return files;
+	}
+
+	/**
+	 * Write a manifest describing the contents of the bundle.
+	 * <p>
+	 * The manifest is an INI-style document, with <code>[files]</code>,
+	 * <code>[packages]</code> and <code>[missing]</code> sections. Paths are
+	 * written relative to the root provided, where possible.
+	 *
+	 * @param out  destination to write to
+	 * @param root path to which file paths should be relative, may be null
+	 * @throws IOException writing failed
+	 */
+	public void writeManifest(Appendable out, Path root) throws IOException {
+		out.append("[files]\n");
+		for (Path file : files()) {
+			out.append(relative(root, file)).append("\n");
+		}
+		out.append("\n[packages]\n");
+		for (Entry e : packages) {
+			out.append(String.format("%s=%s%s\n", e.packageName, relative(root, e.path), e.umodFile == null ? "" : ":" + e.umodFile));
+		}
+		out.append("\n[missing]\n");
+		for (String m : missing) {
+			out.append(m).append("\n");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Bundle [packages=%s, missing=%s]", packages, missing);
+	}
+
+	// --- private helpers
+
+	/**
+	 * Whether a requested package is one of the resolver's own sources for
+	 * its name. A package found by name always is, while a package given by
+	 * file path may be a different file which happens to share a name with
+	 * one of the resolver's packages.
+	 */
+	private static boolean known(DependencyResolver resolver, UnrealPackage pkg) {
+		if (pkg.path == null) return true;
+		return resolver.findPackages(pkg.name).stream()
+					   .anyMatch(p -> p.path != null && pkg.path.toAbsolutePath().equals(p.path.toAbsolutePath()) && Objects.equals(pkg.umodFile, p.umodFile));
+	}
+
+	private static void choose(String name, List<UnrealPackage> found, Set<Path> chosen, Map<String, Entry> entries) {
+		if (entries.containsKey(name)) return;
+		UnrealPackage pkg = found.stream().filter(p -> chosen.contains(p.path)).findFirst().orElse(found.get(0));
+		entries.put(name, new Entry(pkg.name, pkg.path, pkg.umodFile));
+		chosen.add(pkg.path);
+	}
+
+	/**
+	 * Express a file's path relative to a root directory, where the file is
+	 * within that directory.
+	 *
+	 * @param root path to which the file should be relative, may be null
+	 * @param file file path
+	 * @return the relative path, or the file's absolute path if it is not
+	 * 	within the root
+	 */
+	static String relative(Path root, Path file) {
+		if (root == null) return file.toString();
+		Path absRoot = root.toAbsolutePath();
+		Path absFile = file.toAbsolutePath();
+		return absFile.startsWith(absRoot) ? absRoot.relativize(absFile).toString() : absFile.toString();
+	}
+
+	/**
+	 * A package to be distributed.
+	 */
+	public static class Entry {
+
+		public final String packageName;
+
+		/**
+		 * The file to be distributed, either the package itself, or the umod
+		 * which provides it.
+		 */
+		public final Path path;
+
+		/**
+		 * Name of the package within the umod at {@link #path}, or null if the
+		 * package is a plain file.
+		 */
+		public final String umodFile;
+
+		public Entry(String packageName, Path path, String umodFile) {
+			this.packageName = packageName;
+			this.path = path;
+			this.umodFile = umodFile;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Entry [packageName=%s, path=%s, umodFile=%s]", packageName, path, umodFile);
+		}
+	}
+}
@@ -9,7 +9,8 @@ import java.util.regex.Pattern;
 
 public class CLI {
 
-	private static final String OPTION_PATTERN = "--([a-zA-Z0-9-_]+)=(.+)?";
+	// options may be given a value with "--name=value", or as a flag with just "--name"
+	private static final String OPTION_PATTERN = "--([a-zA-Z0-9-_]+)(?:=(.+)?)?";
 
 	private final String[] args;
 	private final Map<String, String> options;
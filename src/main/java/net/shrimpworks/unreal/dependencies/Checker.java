@@ -0,0 +1,18 @@
+package net.shrimpworks.unreal.dependencies;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Source of packages to be checked, and of their dependencies.
+ */
+interface Checker {
+
+	UnrealPackage findPackage(String nameOrPath) throws IOException;
+
+	Map<String, Set<Resolved>> resolve(UnrealPackage pkg);
+
+	List<ExportIndex.Entry> suggest(String importPath, String className);
+}
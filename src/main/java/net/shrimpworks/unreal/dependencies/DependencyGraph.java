@@ -0,0 +1,584 @@
+package net.shrimpworks.unreal.dependencies;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import net.shrimpworks.unreal.packages.entities.Import;
+
+/**
+ * A package-level dependency graph, where each node is a package name, and
+ * each edge represents a package importing something from another.
+ * <p>
+ * Packages are identified by their case-insensitive name, so several files
+ * with the same package name are represented by a single node, with the
+ * union of their dependencies. Packages which are imported but not present
+ * in the source the graph was built from are included as "missing" nodes.
+ * <p>
+ * Nodes are numbered <code>0..size()-1</code>, and edges are held in
+ * compressed primitive adjacency arrays, in both directions, so the graph
+ * remains compact for very large numbers of packages.
+ */
+public class DependencyGraph {
+
+	private static final int MAGIC = 0x55504447; // UPDG
+	private static final int VERSION = 1;
+
+	private final NameTable names;
+	private final int known;
+
+	// outgoing edges of node n are targets[offsets[n]..offsets[n+1]]
+	private final int[] offsets;
+	private final int[] targets;
+
+	// incoming edges of node n are sources[inOffsets[n]..inOffsets[n+1]]
+	private final int[] inOffsets;
+	private final int[] sources;
+
+	private DependencyGraph(NameTable names, int known, int[] offsets, int[] targets) {
+		this.names = names;
+		this.known = known;
+		this.offsets = offsets;
+		this.targets = targets;
+
+		int size = names.size();
+		this.inOffsets = new int[size + 1];
+		this.sources = new int[targets.length];
+		for (int t : targets) inOffsets[t + 1]++;
+		for (int i = 0; i < size; i++) inOffsets[i + 1] += inOffsets[i];
+		int[] pos = Arrays.copyOf(inOffsets, size);
+		for (int n = 0; n < size; n++) {
+			for (int i = offsets[n]; i < offsets[n + 1]; i++) {
+				sources[pos[targets[i]]++] = n;
+			}
+		}
+	}
+
+	/**
+	 * Build a dependency graph of all packages known to a resolver.
+	 * <p>
+	 * Package imports are read from the already-loaded packages in parallel.
+	 *
+	 * @param resolver resolver holding the packages to include
+	 * @return a new dependency graph
+	 */
+	public static DependencyGraph of(DependencyResolver resolver) {
+		Builder builder = new Builder();
+		List<Map.Entry<String, Set<UnrealPackage>>> packages = new ArrayList<>(resolver.knownPackages.entrySet());
+		packages.forEach(e -> builder.add(e.getKey()));
+
+		List<Set<String>> imports = packages.parallelStream()
+											.map(e -> imports(e.getValue()))
+											.toList();
+
+		for (int i = 0; i < packages.size(); i++) {
+			builder.add(packages.get(i).getKey(), imports.get(i));
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Read a graph previously written with {@link #write(OutputStream)}.
+	 *
+	 * @param in stream to read from
+	 * @return the graph read
+	 * @throws IOException reading failed, or the stream does not contain a graph
+	 */
+	public static DependencyGraph read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if (data.readInt() != MAGIC) throw new IOException("Not a dependency graph");
+		int version = data.readInt();
+		if (version != VERSION) throw new IOException("Unsupported dependency graph version " + version);
+
+		int size = data.readInt();
+		int known = data.readInt();
+		if (size < 0 || known < 0 || known > size) throw new IOException(String.format("Invalid graph size %d, known %d", size, known));
+
+		NameTable names = new NameTable();
+		for (int i = 0; i < size; i++) names.intern(data.readUTF());
+		if (names.size() != size) throw new IOException("Graph contains duplicate package names");
+
+		int[] offsets = new int[size + 1];
+		for (int i = 0; i <= size; i++) {
+			offsets[i] = data.readInt();
+			if (i == 0 ? offsets[i] != 0 : offsets[i] < offsets[i - 1]) throw new IOException("Invalid edge offset for node " + i);
+		}
+		int[] targets = new int[offsets[size]];
+		for (int i = 0; i < targets.length; i++) {
+			targets[i] = data.readInt();
+			if (targets[i] < 0 || targets[i] >= size) throw new IOException("Invalid edge target " + targets[i]);
+		}
+
+		return new DependencyGraph(names, known, offsets, targets);
+	}
+
+	/**
+	 * @return number of packages in the graph, including missing packages
+	 */
+	public int size() {
+		return names.size();
+	}
+
+	/**
+	 * @return number of dependencies between packages in the graph
+	 */
+	public int edges() {
+		return targets.length;
+	}
+
+	/**
+	 * Find the node representing a package.
+	 *
+	 * @param name package name, case insensitive
+	 * @return the node of the package, or {@link NameTable#NOT_FOUND}
+	 */
+	public int node(String name) {
+		return names.lookup(name);
+	}
+
+	/**
+	 * @param node package node
+	 * @return the name of the package
+	 */
+	public String name(int node) {
+		return names.name(node);
+	}
+
+	/**
+	 * @param node package node
+	 * @return true if the package is imported by others, but is not available
+	 */
+	public boolean missing(int node) {
+		return node >= known;
+	}
+
+	/**
+	 * @param node package node
+	 * @return the packages the node imports from
+	 */
+	public int[] dependencies(int node) {
+		return Arrays.copyOfRange(targets, offsets[node], offsets[node + 1]);
+	}
+
+	/**
+	 * @param node package node
+	 * @return the packages which import from the node
+	 */
+	public int[] dependants(int node) {
+		return Arrays.copyOfRange(sources, inOffsets[node], inOffsets[node + 1]);
+	}
+
+	/**
+	 * @param node package node
+	 * @return the number of packages which import from the node
+	 */
+	public int dependantCount(int node) {
+		return inOffsets[node + 1] - inOffsets[node];
+	}
+
+	/**
+	 * Find the packages which the most other packages depend upon.
+	 *
+	 * @param limit maximum number of packages to return
+	 * @return package nodes, ordered by number of dependants, descending
+	 */
+	public int[] mostDependedUpon(int limit) {
+		// a bounded heap of the best nodes seen so far, with the lowest ranked at the root
+		int[] heap = new int[Math.max(0, Math.min(limit, size()))];
+		int count = 0;
+		for (int n = 0; n < size() && heap.length > 0; n++) {
+			if (count < heap.length) {
+				heap[count] = n;
+				siftUp(heap, count++);
+			} else if (ranksBefore(n, heap[0])) {
+				heap[0] = n;
+				siftDown(heap, 0, count);
+			}
+		}
+
+		// removing the lowest ranked repeatedly fills the result from the end
+		int[] result = new int[count];
+		for (int i = count - 1; i >= 0; i--) {
+			result[i] = heap[0];
+			heap[0] = heap[i];
+			siftDown(heap, 0, i);
+		}
+		return result;
+	}
+
+	/**
+	 * Find packages which no other package depends upon.
+	 * <p>
+	 * These are typically maps or mutators, but may also be unused leftovers.
+	 *
+	 * @return orphaned package nodes
+	 */
+	public int[] orphans() {
+		return IntStream.range(0, known).filter(n -> dependantCount(n) == 0).toArray();
+	}
+
+	/**
+	 * Find groups of packages which depend on each other, directly or
+	 * indirectly.
+	 * <p>
+	 * Only components with more than one member, ie. circular dependencies,
+	 * are returned.
+	 *
+	 * @return strongly connected components, each an array of package nodes
+	 */
+	public List<int[]> stronglyConnectedComponents() {
+		// iterative implementation of Tarjan's algorithm, to avoid stack overflow on deep graphs
+		int size = size();
+		int[] index = new int[size];
+		int[] lowLink = new int[size];
+		int[] edgePos = new int[size];
+		boolean[] onStack = new boolean[size];
+		int[] stack = new int[size];
+		int[] callStack = new int[size];
+		Arrays.fill(index, -1);
+
+		List<int[]> components = new ArrayList<>();
+		int nextIndex = 0;
+		int sp = 0;
+
+		for (int root = 0; root < size; root++) {
+			if (index[root] != -1) continue;
+
+			int csp = 0;
+			callStack[csp++] = root;
+			index[root] = lowLink[root] = nextIndex++;
+			edgePos[root] = offsets[root];
+			stack[sp++] = root;
+			onStack[root] = true;
+
+			while (csp > 0) {
+				int n = callStack[csp - 1];
+				if (edgePos[n] < offsets[n + 1]) {
+					int t = targets[edgePos[n]++];
+					if (index[t] == -1) {
+						index[t] = lowLink[t] = nextIndex++;
+						edgePos[t] = offsets[t];
+						stack[sp++] = t;
+						onStack[t] = true;
+						callStack[csp++] = t;
+					} else if (onStack[t]) {
+						lowLink[n] = Math.min(lowLink[n], index[t]);
+					}
+				} else {
+					csp--;
+					if (csp > 0) {
+						int parent = callStack[csp - 1];
+						lowLink[parent] = Math.min(lowLink[parent], lowLink[n]);
+					}
+					if (lowLink[n] == index[n]) {
+						int start = sp;
+						do {
+							onStack[stack[--start]] = false;
+						} while (stack[start] != n);
+						if (sp - start > 1) components.add(Arrays.copyOfRange(stack, start, sp));
+						sp = start;
+					}
+				}
+			}
+		}
+
+		return components;
+	}
+
+	/**
+	 * Find all the packages required, directly or indirectly, by the
+	 * packages provided, including the packages themselves.
+	 * <p>
+	 * For example, given a list of maps, this is the set of packages a server
+	 * needs in order to host them.
+	 *
+	 * @param roots nodes of the packages to start from
+	 * @return the nodes of all required packages
+	 */
+	public BitSet closure(int... roots) {
+		return closure(n -> true, roots);
+	}
+
+	/**
+	 * Find all the packages required, directly or indirectly, by the
+	 * packages provided, including the packages themselves, but excluding
+	 * any packages (and their dependencies) not accepted by the filter.
+	 * <p>
+	 * For example, the filter may exclude packages which are expected to
+	 * already be present, such as those shipped with a game.
+	 *
+	 * @param include filter accepting nodes to be included and followed
+	 * @param roots   nodes of the packages to start from
+	 * @return the nodes of all required packages
+	 */
+	public BitSet closure(IntPredicate include, int... roots) {
+		BitSet seen = new BitSet(size());
+		int[] queue = new int[size()];
+		int head = 0;
+		int tail = 0;
+		for (int root : roots) {
+			if (root < 0 || seen.get(root) || !include.test(root)) continue;
+			seen.set(root);
+			queue[tail++] = root;
+		}
+		while (head < tail) {
+			int n = queue[head++];
+			for (int i = offsets[n]; i < offsets[n + 1]; i++) {
+				int t = targets[i];
+				if (!seen.get(t) && include.test(t)) {
+					seen.set(t);
+					queue[tail++] = t;
+				}
+			}
+		}
+		return seen;
+	}
+
+	/**
+	 * Find all the packages required, directly or indirectly, by the named
+	 * packages. Names not present in the graph are ignored.
+	 *
+	 * @param packages names of the packages to start from
+	 * @return the nodes of all required packages
+	 * @see #closure(int...)
+	 */
+	public BitSet closure(Collection<String> packages) {
+		return closure(packages.stream().mapToInt(this::node).toArray());
+	}
+
+	/**
+	 * Perform the standard set of archive-wide analyses, in parallel.
+	 *
+	 * @param top number of most depended-upon packages to include
+	 * @return analysis results
+	 */
+	public Analysis analyse(int top) {
+		CompletableFuture<int[]> most = CompletableFuture.supplyAsync(() -> mostDependedUpon(top));
+		CompletableFuture<int[]> orphans = CompletableFuture.supplyAsync(this::orphans);
+		CompletableFuture<List<int[]>> components = CompletableFuture.supplyAsync(this::stronglyConnectedComponents);
+		CompletableFuture<int[]> missing = CompletableFuture.supplyAsync(() -> IntStream.range(known, size()).toArray());
+
+		return new Analysis(most.join(), orphans.join(), components.join(), missing.join());
+	}
+
+	/**
+	 * Write the graph in Graphviz DOT format.
+	 * <p>
+	 * Missing packages are drawn with dashed outlines.
+	 *
+	 * @param out destination to write to
+	 * @throws IOException writing failed
+	 */
+	public void writeDot(Appendable out) throws IOException {
+		out.append("digraph dependencies {\n");
+		for (int n = 0; n < size(); n++) {
+			out.append(String.format("  n%d [label=\"%s\"%s];%n", n, name(n).replace("\\", "\\\\").replace("\"", "\\\""),
+									 missing(n) ? ", style=dashed" : ""));
+		}
+		for (int n = 0; n < size(); n++) {
+			for (int i = offsets[n]; i < offsets[n + 1]; i++) {
+				out.append(String.format("  n%d -> n%d;%n", n, targets[i]));
+			}
+		}
+		out.append("}\n");
+	}
+
+	/**
+	 * Write the graph in GraphML format.
+	 *
+	 * @param out destination to write to
+	 * @throws IOException writing failed
+	 */
+	public void writeGraphML(Appendable out) throws IOException {
+		out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		out.append("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+		out.append("  <key id=\"name\" for=\"node\" attr.name=\"name\" attr.type=\"string\"/>\n");
+		out.append("  <key id=\"missing\" for=\"node\" attr.name=\"missing\" attr.type=\"boolean\"/>\n");
+		out.append("  <graph id=\"dependencies\" edgedefault=\"directed\">\n");
+		for (int n = 0; n < size(); n++) {
+			out.append(String.format("    <node id=\"n%d\"><data key=\"name\">%s</data><data key=\"missing\">%s</data></node>%n",
+									 n, xml(name(n)), missing(n)));
+		}
+		for (int n = 0; n < size(); n++) {
+			for (int i = offsets[n]; i < offsets[n + 1]; i++) {
+				out.append(String.format("    <edge source=\"n%d\" target=\"n%d\"/>%n", n, targets[i]));
+			}
+		}
+		out.append("  </graph>\n");
+		out.append("</graphml>\n");
+	}
+
+	/**
+	 * Write the graph in a compact binary form, which may be read back via
+	 * {@link #read(InputStream)}.
+	 *
+	 * @param out stream to write to
+	 * @throws IOException writing failed
+	 */
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(size());
+		data.writeInt(known);
+		for (int n = 0; n < size(); n++) data.writeUTF(name(n));
+		for (int offset : offsets) data.writeInt(offset);
+		for (int target : targets) data.writeInt(target);
+		data.flush();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("DependencyGraph [size=%d, missing=%d, edges=%d]", size(), size() - known, edges());
+	}
+
+	// --- private helpers
+
+	/**
+	 * Whether node <code>a</code> has more dependants than <code>b</code>,
+	 * or the same number and a lower node number.
+	 */
+	private boolean ranksBefore(int a, int b) {
+		int res = Integer.compare(dependantCount(a), dependantCount(b));
+		return res != 0 ? res > 0 : a < b;
+	}
+
+	private void siftUp(int[] heap, int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!ranksBefore(heap[parent], heap[i])) break;
+			swap(heap, i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int[] heap, int i, int count) {
+		while (true) {
+			int lowest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < count && ranksBefore(heap[lowest], heap[left])) lowest = left;
+			if (right < count && ranksBefore(heap[lowest], heap[right])) lowest = right;
+			if (lowest == i) return;
+			swap(heap, i, lowest);
+			i = lowest;
+		}
+	}
+
+	private static void swap(int[] array, int a, int b) {
+		int tmp = array[a];
+		array[a] = array[b];
+		array[b] = tmp;
+	}
+
+	private static Set<String> imports(Set<UnrealPackage> packages) {
+		Set<String> imports = new HashSet<>();
+		for (UnrealPackage pkg : packages) {
+			for (Import i : pkg.pkg.packageImports()) imports.add(i.name.name);
+		}
+		return imports;
+	}
+
+	private static String xml(String s) {
+		return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+
+	/**
+	 * Results of {@link #analyse(int)}.
+	 */
+	public static class Analysis {
+
+		public final int[] mostDependedUpon;
+		public final int[] orphans;
+		public final List<int[]> circular;
+		public final int[] missing;
+
+		public Analysis(int[] mostDependedUpon, int[] orphans, List<int[]> circular, int[] missing) {
+			this.mostDependedUpon = mostDependedUpon;
+			this.orphans = orphans;
+			this.circular = circular;
+			this.missing = missing;
+		}
+	}
+
+	/**
+	 * Incrementally collects packages and their dependencies.
+	 * <p>
+	 * All packages must be added via {@link #add(String)} before any
+	 * dependencies are added, so that any dependencies not added are
+	 * identified as missing.
+	 */
+	public static class Builder {
+
+		private final NameTable names = new NameTable();
+		private final List<int[]> dependencies = new ArrayList<>();
+		private int known = -1;
+
+		/**
+		 * Add an available package.
+		 *
+		 * @param name package name
+		 * @return this builder
+		 */
+		public Builder add(String name) {
+			if (known >= 0) throw new IllegalStateException("Packages must be added before dependencies");
+			names.intern(name);
+			return this;
+		}
+
+		/**
+		 * Add the dependencies of a package.
+		 *
+		 * @param name         package name
+		 * @param dependencies names of the packages depended upon
+		 * @return this builder
+		 */
+		public Builder add(String name, Collection<String> dependencies) {
+			if (known < 0) {
+				known = names.size();
+				for (int i = 0; i < known; i++) this.dependencies.add(new int[0]);
+			}
+			int node = names.lookup(name);
+			if (node == NameTable.NOT_FOUND || node >= known) {
+				throw new IllegalArgumentException("Package has not been added: " + name);
+			}
+
+			int[] existing = this.dependencies.get(node);
+			int[] merged = IntStream.concat(Arrays.stream(existing), dependencies.stream().mapToInt(names::intern))
+									.filter(d -> d != node)
+									.sorted()
+									.distinct()
+									.toArray();
+			this.dependencies.set(node, merged);
+			return this;
+		}
+
+		public DependencyGraph build() {
+			int size = names.size();
+			int[] offsets = new int[size + 1];
+			for (int n = 0; n < size; n++) {
+				offsets[n + 1] = offsets[n] + (n < dependencies.size() ? dependencies.get(n).length : 0);
+			}
+			int[] targets = new int[offsets[size]];
+			for (int n = 0; n < dependencies.size(); n++) {
+				System.arraycopy(dependencies.get(n), 0, targets, offsets[n], dependencies.get(n).length);
+			}
+
+			return new DependencyGraph(names, known < 0 ? size : known, offsets, targets);
+		}
+	}
+}
@@ -6,13 +6,17 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import net.shrimpworks.unreal.packages.Package;
 import net.shrimpworks.unreal.packages.PackageReader;
@@ -28,15 +32,24 @@ public class DependencyResolver {
 
 	public final Path rootPath;
 	public final Map<String, Set<UnrealPackage>> knownPackages;
-	private final Map<String, Set<UnrealPackage>> lowerNames;
 	private final NativePackages nativePackages;
+	private final Consumer<ResolutionException> exceptionHandler;
+
+	// names of known packages, private to this resolver so they are released with it
+	private final NameTable packageNames;
+
+	// known packages, indexed by case-insensitive name id from packageNames
+	private final List<Set<UnrealPackage>> packagesByName;
+
+	private volatile ExportIndex exportIndex;
+	private volatile DependencyGraph graph;
 
 	public DependencyResolver(Path rootPath) throws IOException {
 		this(rootPath, NativePackages.DEFAULT);
 	}
 
 	public DependencyResolver(Path rootPath, NativePackages nativePackages) throws IOException, ResolutionException {
-		this(rootPath, NativePackages.DEFAULT, e -> {
+		this(rootPath, nativePackages, e -> {
 			throw e;
 		});
 	}
@@ -45,8 +58,9 @@ public class DependencyResolver {
 		throws IOException, ResolutionException {
 		this.rootPath = rootPath;
 		this.nativePackages = nativePackages;
+		this.exceptionHandler = exceptionHandler;
+		this.packageNames = new NameTable();
 		this.knownPackages = new HashMap<>();
-		this.lowerNames = new HashMap<>();
 
 		Files.walkFileTree(rootPath, new SimpleFileVisitor<>() {
 			@Override
@@ -62,7 +76,8 @@ public class DependencyResolver {
 								String umExt = extension(umodFile.name).toLowerCase();
 								if (FILE_TYPES.contains(umExt)) {
 									UnrealPackage pkg = new UnrealPackage(UnrealPackage.plainName(umodFile.name),
-																		  new Package(new PackageReader(umodFile.read())));
+																		  new Package(new PackageReader(umodFile.read())),
+																		  file, umodFile.name);
 									knownPackages.computeIfAbsent(pkg.name, n -> new HashSet<>()).add(pkg);
 								}
 							}
@@ -77,7 +92,14 @@ public class DependencyResolver {
 			}
 		});
 
-		knownPackages.forEach((k, v) -> lowerNames.put(k.toLowerCase(), v));
+		List<Set<UnrealPackage>> byName = new ArrayList<>();
+		knownPackages.forEach((k, v) -> {
+			int id = packageNames.intern(k);
+			if (id == byName.size()) byName.add(new HashSet<>());
+			// merges packages with names differing only by case
+			byName.get(id).addAll(v);
+		});
+		this.packagesByName = byName.stream().map(Collections::unmodifiableSet).toList();
 	}
 
 	/**
@@ -89,8 +111,92 @@ public class DependencyResolver {
 	 * @throws NoSuchElementException the package could not be found
 	 */
 	public UnrealPackage findPackage(String pkgName) {
-		return lowerNames.get(pkgName.toLowerCase()).stream().findFirst()
-						 .orElseThrow(() -> new NoSuchElementException("Could not find package with name " + pkgName));
+		return packages(packageNames.lookup(pkgName)).stream().findFirst()
+											  .orElseThrow(() -> new NoSuchElementException("Could not find package with name " + pkgName));
+	}
+
+	/**
+	 * @return the native packages used to resolve imports which are not
+	 * 	exported by known packages
+	 */
+	public NativePackages nativePackages() {
+		return nativePackages;
+	}
+
+	/**
+	 * Find all packages with the given name - excluding file extensions (case
+	 * insensitive).
+	 * <p>
+	 * There may be several, such as when the same package exists as a file
+	 * and within a umod.
+	 *
+	 * @param pkgName package to find
+	 * @return found packages, or an empty set if none were found
+	 */
+	public Set<UnrealPackage> findPackages(String pkgName) {
+		return packages(packageNames.lookup(pkgName));
+	}
+
+	/**
+	 * Get an index of all exports of all known packages, which may be used to
+	 * search for exported objects across all packages.
+	 * <p>
+	 * The index is built on first use, and retained for the lifetime of this
+	 * resolver. Packages which fail to be indexed are reported to this
+	 * resolver's exception handler, and left out of the index.
+	 *
+	 * @return index of known exports
+	 */
+	public ExportIndex exports() {
+		ExportIndex index = exportIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = exportIndex;
+				if (index == null) {
+					index = ExportIndex.of(knownPackages.values().stream().flatMap(Set::stream).toList(), exceptionHandler);
+					exportIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Get a graph of the dependencies between all known packages, which may be
+	 * used for archive-wide analysis.
+	 * <p>
+	 * The graph is built on first use, and retained for the lifetime of this
+	 * resolver.
+	 *
+	 * @return package dependency graph
+	 */
+	public DependencyGraph graph() {
+		DependencyGraph g = graph;
+		if (g == null) {
+			synchronized (this) {
+				g = graph;
+				if (g == null) {
+					g = DependencyGraph.of(this);
+					graph = g;
+				}
+			}
+		}
+		return g;
+	}
+
+	/**
+	 * Compute the files required to redistribute a set of packages, including
+	 * all the packages they depend on.
+	 * <p>
+	 * See {@link Bundle#of(DependencyResolver, Collection, Predicate)}.
+	 *
+	 * @param packages packages to bundle
+	 * @param exclude  filter matching package names which should not be
+	 *                 included, such as those shipped with the game
+	 * @return the bundle
+	 */
+	public Bundle bundle(Collection<UnrealPackage> packages, Predicate<String> exclude) {
+		return Bundle.of(this, packages, exclude);
 	}
 
 	/**
@@ -114,31 +220,25 @@ public class DependencyResolver {
 	public Map<String, Set<Resolved>> resolve(UnrealPackage unrealPackage) {
 		Map<String, Set<Resolved>> importPackages = new HashMap<>();
 		for (Import rootImport : unrealPackage.pkg.packageImports()) {
-			Set<UnrealPackage> candidatePackages = lowerNames.getOrDefault(rootImport.name.name.toLowerCase(), Collections.emptySet());
+			Set<UnrealPackage> candidatePackages = packages(packageNames.lookup(rootImport.name.name));
+			NativePackages.NativePackage nativePackage = nativePackages.get(rootImport.name.name);
 			Set<Resolved> candidates = new HashSet<>();
 			for (Import i : rootImport.children()) {
 				// required package is missing completely
 				if (candidatePackages.isEmpty()) candidates.add(resolve(i, null));
 
 				for (UnrealPackage pkg : candidatePackages) {
-					// prefer exports with children, they have stuff to import
-					pkg.pkg.rootExports().stream()
-						   .filter(e -> e.name.name.equalsIgnoreCase(i.name.name))
-						   .min((a, b) -> a.children().isEmpty() ? 1 : -1)
-						   .ifPresentOrElse(
-							   found -> candidates.add(resolve(i, found)),
-							   () -> {
-								   // no regular exports found, maybe we can find a native export
-								   NativePackages.NativePackage nativePackage = nativePackages.get(rootImport.name.name);
-								   if (nativePackage != null && nativePackage.contains(i.name.name)) {
-									   candidates.add(new Resolved(i, Resolved.ResolvedTarget.nativeClass(nativePackage.name,
-																										  i.name.name),
-																   Collections.emptySet()));
-								   } else {
-									   // we didn't find a sub-package or export we were looking for, so add the rest of the imports
-									   candidates.add(resolve(i, null));
-								   }
-							   });
+					Export found = rootExport(pkg, i.name.name);
+					if (found != null) {
+						candidates.add(resolve(i, found));
+					} else if (nativePackage != null && nativePackage.contains(i.name.name)) {
+						// no regular exports found, but we found a native export
+						candidates.add(new Resolved(i, Resolved.ResolvedTarget.nativeClass(nativePackage.name, i.name.name),
+													Collections.emptySet()));
+					} else {
+						// we didn't find a sub-package or export we were looking for, so add the rest of the imports
+						candidates.add(resolve(i, null));
+					}
 				}
 			}
 			importPackages.put(rootImport.name.name, candidates);
@@ -149,6 +249,24 @@ public class DependencyResolver {
 
 	// --- private helpers
 
+	private Set<UnrealPackage> packages(int nameId) {
+		if (nameId == NameTable.NOT_FOUND || nameId >= packagesByName.size()) return Collections.emptySet();
+		Set<UnrealPackage> found = packagesByName.get(nameId);
+		return found == null ? Collections.emptySet() : found;
+	}
+
+	/**
+	 * Find a root export by name, preferring exports with children, since
+	 * they have stuff to import.
+	 */
+	private static Export rootExport(UnrealPackage pkg, String name) {
+		Export found = null;
+		for (Export e : pkg.pkg.rootExports()) {
+			if (e.name.name.equalsIgnoreCase(name) && (found == null || found.children().isEmpty())) found = e;
+		}
+		return found;
+	}
+
 	private Resolved resolve(Import anImport, Export anExport) {
 		Set<Resolved> children = new HashSet<>();
 		for (Import i : anImport.children()) {
@@ -0,0 +1,398 @@
+package net.shrimpworks.unreal.dependencies;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import net.shrimpworks.unreal.packages.entities.Export;
+import net.shrimpworks.unreal.packages.entities.Named;
+
+/**
+ * A searchable index of every export (textures, classes, sounds, etc) of a
+ * collection of packages, keyed by fully-qualified path in the form
+ * <code>Package.Group.Name</code>.
+ * <p>
+ * The index is held as an array of paths sorted case-insensitively, allowing
+ * exact, prefix and case-insensitive lookups via binary search, with paths
+ * folded as they are compared rather than stored a second time. Object names
+ * are not stored separately, but ordered by their offset within those paths.
+ * Package and class names are interned while building, since they repeat
+ * heavily across exports, and {@link Entry} instances are only created for
+ * results.
+ */
+public class ExportIndex {
+
+	/**
+	 * Class of group imports and exports.
+	 */
+	private static final String GROUP_CLASS = "Package";
+
+	// full paths, sorted case-insensitively
+	private final String[] paths;
+
+	// interned package and class names, and the offset of the object name within each path, parallel to paths
+	private final String[] packageNames;
+	private final String[] classNames;
+	private final int[] nameStarts;
+
+	// positions within paths, ordered case-insensitively by object name
+	private final int[] nameEntries;
+
+	private ExportIndex(List<String> paths, List<String> packageNames, List<String> classNames) {
+		Integer[] order = new Integer[paths.size()];
+		for (int i = 0; i < order.length; i++) order[i] = i;
+		Arrays.sort(order, (a, b) -> compare(paths.get(a), 0, paths.get(b), 0, false));
+
+		this.paths = new String[order.length];
+		this.packageNames = new String[order.length];
+		this.classNames = new String[order.length];
+		this.nameStarts = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			this.paths[i] = paths.get(order[i]);
+			this.packageNames[i] = packageNames.get(order[i]);
+			this.classNames[i] = classNames.get(order[i]);
+			this.nameStarts[i] = this.paths[i].lastIndexOf('.') + 1;
+		}
+
+		Integer[] byName = new Integer[order.length];
+		for (int i = 0; i < byName.length; i++) byName[i] = i;
+		Arrays.sort(byName, (a, b) -> compare(this.paths[a], nameStarts[a], this.paths[b], nameStarts[b], false));
+
+		this.nameEntries = new int[byName.length];
+		for (int i = 0; i < byName.length; i++) nameEntries[i] = byName[i];
+	}
+
+	/**
+	 * Build an index of all the exports of the provided packages.
+	 *
+	 * @param packages packages to index
+	 * @return a new export index
+	 */
+	public static ExportIndex of(Collection<UnrealPackage> packages) {
+		return of(packages, e -> {
+			throw e;
+		});
+	}
+
+	/**
+	 * Build an index of all the exports of the provided packages.
+	 * <p>
+	 * A package which can not be indexed, for example due to corrupt export
+	 * data, is left out of the index entirely and reported to the exception
+	 * handler, rather than preventing the other packages being indexed.
+	 *
+	 * @param packages         packages to index
+	 * @param exceptionHandler handler for packages which failed to be indexed
+	 * @return a new export index
+	 */
+	public static ExportIndex of(Collection<UnrealPackage> packages, Consumer<DependencyResolver.ResolutionException> exceptionHandler) {
+		Builder builder = new Builder();
+		for (UnrealPackage pkg : packages) {
+			int mark = builder.paths.size();
+			try {
+				for (Export e : pkg.pkg.rootExports()) {
+					builder.add(pkg.name, "", e);
+				}
+			} catch (Exception | StackOverflowError e) {
+				// stack overflows result from corrupt packages with cyclic export references
+				builder.truncate(mark);
+				exceptionHandler.accept(new DependencyResolver.ResolutionException(
+					pkg.path, String.format("Failed to index package %s: %s", pkg.name, e), e
+				));
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Find an export by its exact fully-qualified path.
+	 * <p>
+	 * Case-sensitive; since the same package may be indexed more than once
+	 * (for example a loose file and a copy within a umod), several entries may
+	 * be returned.
+	 *
+	 * @param path path to find, in the form <code>Package.Group.Name</code>
+	 * @return matching exports, or an empty list if none were found
+	 */
+	public List<Entry> exact(String path) {
+		List<Entry> found = new ArrayList<>();
+		for (Entry e : find(path)) {
+			if (e.path.equals(path)) found.add(e);
+		}
+		return found;
+	}
+
+	/**
+	 * Find an export by its fully-qualified path (case-insensitive).
+	 *
+	 * @param path path to find, in the form <code>Package.Group.Name</code>
+	 * @return matching exports, or an empty list if none were found
+	 */
+	public List<Entry> find(String path) {
+		int start = lowerBound(path);
+		int end = start;
+		while (end < paths.length && compare(paths[end], 0, path, 0, false) == 0) end++;
+		return entries(start, end);
+	}
+
+	/**
+	 * Find all exports with a path beginning with the prefix provided
+	 * (case-insensitive).
+	 * <p>
+	 * For example, <code>"Botpack.Skins."</code> returns everything within the
+	 * <code>Skins</code> group of the <code>Botpack</code> package.
+	 *
+	 * @param prefix path prefix to search for
+	 * @return matching exports, or an empty list if none were found
+	 */
+	public List<Entry> prefix(String prefix) {
+		int start = lowerBound(prefix);
+		int end = start;
+		while (end < paths.length && compare(paths[end], 0, prefix, 0, true) == 0) end++;
+		return entries(start, end);
+	}
+
+	/**
+	 * Find all exports with the given object name, regardless of the package
+	 * or group they are contained in (case-insensitive).
+	 *
+	 * @param name object name, for example <code>"Ripper"</code>
+	 * @return matching exports, or an empty list if none were found
+	 */
+	public List<Entry> named(String name) {
+		int low = 0;
+		int high = nameEntries.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compareName(nameEntries[mid], name) < 0) low = mid + 1;
+			else high = mid;
+		}
+		List<Entry> found = new ArrayList<>();
+		for (int i = low; i < nameEntries.length && compareName(nameEntries[i], name) == 0; i++) {
+			found.add(entry(nameEntries[i]));
+		}
+		return found;
+	}
+
+	/**
+	 * Suggest exports which may satisfy an import which could not be resolved.
+	 * <p>
+	 * Candidates are exports with the same object name and class as the
+	 * import, located in any package other than the one originally requested,
+	 * which typically indicates the import's package was renamed or moved.
+	 * <p>
+	 * Groups are not suggested, since common group names such as
+	 * <code>Skins</code> appear in a great many packages.
+	 *
+	 * @param importPath full path of the import, for example
+	 *                   <code>Botpack.Skins.Ripper</code>
+	 * @param className  the class of the import
+	 * @return possible alternatives for the import
+	 */
+	public List<Entry> suggest(String importPath, String className) {
+		if (className.equalsIgnoreCase(GROUP_CLASS)) return List.of();
+
+		int dot = importPath.indexOf('.');
+		String pkgName = dot < 0 ? importPath : importPath.substring(0, dot);
+		String objName = importPath.substring(importPath.lastIndexOf('.') + 1);
+		List<Entry> found = new ArrayList<>();
+		for (Entry e : named(objName)) {
+			if (e.className.equalsIgnoreCase(className) && !e.packageName.equalsIgnoreCase(pkgName)) found.add(e);
+		}
+		return found;
+	}
+
+	/**
+	 * @return the number of exports indexed
+	 */
+	public int size() {
+		return paths.length;
+	}
+
+	/**
+	 * @return all indexed exports, ordered by path; entries are created as
+	 * 	they are accessed
+	 */
+	public List<Entry> entries() {
+		return entries(0, paths.length);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ExportIndex [size=%d]", paths.length);
+	}
+
+	// --- private helpers
+
+	private Entry entry(int i) {
+		return new Entry(packageNames[i], paths[i], classNames[i]);
+	}
+
+	private List<Entry> entries(int start, int end) {
+		if (start >= end) return List.of();
+		return new AbstractList<>() {
+			@Override
+			public Entry get(int index) {
+				Objects.checkIndex(index, end - start);
+				return entry(start + index);
+			}
+
+			@Override
+			public int size() {
+				return end - start;
+			}
+		};
+	}
+
+	/**
+	 * Binary search for the first path not less than the key
+	 * (case-insensitive).
+	 */
+	private int lowerBound(String key) {
+		int low = 0;
+		int high = paths.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(paths[mid], 0, key, 0, false) < 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	private int compareName(int i, String name) {
+		return compare(paths[i], nameStarts[i], name, 0, false);
+	}
+
+	/**
+	 * Case-insensitive comparison of two strings, from the offsets provided
+	 * to their ends.
+	 *
+	 * @param prefix if true, a match of all of <code>b</code> compares as
+	 *               equal, regardless of the remaining length of
+	 *               <code>a</code>
+	 */
+	private static int compare(String a, int aStart, String b, int bStart, boolean prefix) {
+		int aLen = a.length() - aStart;
+		int bLen = b.length() - bStart;
+		int n = Math.min(aLen, bLen);
+		for (int i = 0; i < n; i++) {
+			char ca = a.charAt(aStart + i);
+			char cb = b.charAt(bStart + i);
+			if (ca != cb) {
+				ca = NameTable.fold(ca);
+				cb = NameTable.fold(cb);
+				if (ca != cb) return ca - cb;
+			}
+		}
+		if (prefix && aLen >= bLen) return 0;
+		return aLen - bLen;
+	}
+
+	/**
+	 * A single indexed export.
+	 */
+	public static class Entry {
+
+		public final String packageName;
+		public final String path;
+		public final String className;
+
+		// offset of the object name within the path
+		private final int nameStart;
+
+		Entry(String packageName, String path, String className) {
+			this.packageName = packageName;
+			this.path = path;
+			this.className = className;
+			this.nameStart = path.lastIndexOf('.') + 1;
+		}
+
+		/**
+		 * @return the name of the exported object, without package or groups
+		 */
+		public String name() {
+			return path.substring(nameStart);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %s", path, className);
+		}
+	}
+
+	/**
+	 * Incrementally collects exports to be indexed.
+	 */
+	public static class Builder {
+
+		private final List<String> paths = new ArrayList<>();
+		private final List<String> packageNames = new ArrayList<>();
+		private final List<String> classNames = new ArrayList<>();
+		private final Map<String, String> interned = new HashMap<>();
+
+		/**
+		 * Add an export, and all its children.
+		 *
+		 * @param packageName package the export belongs to
+		 * @param group       path of groups containing the export, without the
+		 *                    package name, or an empty string for root exports
+		 * @param export      export to add
+		 * @return this builder
+		 */
+		public Builder add(String packageName, String group, Export export) {
+			String className = className(export);
+			add(packageName, group.isEmpty() ? export.name.name : group + "." + export.name.name, className);
+
+			Set<Export> children = export.children();
+			if (!children.isEmpty()) {
+				String childGroup = group.isEmpty() ? export.name.name : group + "." + export.name.name;
+				for (Export child : children) add(packageName, childGroup, child);
+			}
+			return this;
+		}
+
+		/**
+		 * Add an export by name.
+		 *
+		 * @param packageName package the export belongs to
+		 * @param path        path of the export within the package, eg.
+		 *                    <code>Group.Name</code>
+		 * @param className   class of the export
+		 * @return this builder
+		 */
+		public Builder add(String packageName, String path, String className) {
+			String pkg = intern(packageName);
+			paths.add(pkg + "." + path);
+			packageNames.add(pkg);
+			classNames.add(intern(className));
+			return this;
+		}
+
+		public ExportIndex build() {
+			return new ExportIndex(paths, packageNames, classNames);
+		}
+
+		private String intern(String s) {
+			return interned.computeIfAbsent(s, k -> k);
+		}
+
+		private void truncate(int size) {
+			paths.subList(size, paths.size()).clear();
+			packageNames.subList(size, packageNames.size()).clear();
+			classNames.subList(size, classNames.size()).clear();
+		}
+
+		private static String className(Export export) {
+			// exports without a class reference are classes themselves
+			Named cls = export.classIndex == null ? null : export.classIndex.get();
+			return cls == null ? "Class" : cls.name().name;
+		}
+	}
+}
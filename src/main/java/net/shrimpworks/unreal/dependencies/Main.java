@@ -1,21 +1,32 @@
 package net.shrimpworks.unreal.dependencies;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
 
 import net.shrimpworks.unreal.packages.entities.Export;
 import net.shrimpworks.unreal.packages.entities.Import;
 
 public class Main {
 
-	private enum Verbosity {
+	enum Verbosity {
 		FILES,
 		PACKAGES,
 		MISSING_PACKAGES,
@@ -27,13 +38,15 @@ public class Main {
 
 	private static final String ANSI_RED = "\u001B[31m";
 	private static final String ANSI_GREEN = "\u001B[32m";
+	private static final String ANSI_YELLOW = "\u001B[33m";
 	private static final String ANSI_RESET = "\u001B[0m";
 
 	private static final String OK = String.format("%so%s", ANSI_GREEN, ANSI_RESET);
 	private static final String BAD = String.format("%sx%s", ANSI_RED, ANSI_RESET);
+	private static final String MAYBE = String.format("%s?%s", ANSI_YELLOW, ANSI_RESET);
 
-	public static void main(String[] args) throws IOException {
-		CLI cli = CLI.parse(Map.of("show", "all"), args);
+	public static void main(String[] args) throws IOException, InterruptedException {
+		CLI cli = CLI.parse(Map.of("show", "all", "suggest", "true"), args);
 
 		if (cli.args().length < 1) {
 			System.err.println("A search path is expected!");
@@ -48,42 +61,235 @@ public class Main {
 		}
 
 		final Verbosity verbosity = Verbosity.valueOf(cli.option("show", "all").toUpperCase());
+		final boolean suggest = cli.option("suggest", "true").isEmpty() || Boolean.parseBoolean(cli.option("suggest", "true"));
+		final int threads;
+		try {
+			threads = Integer.parseInt(cli.option("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+			if (threads < 1) throw new NumberFormatException();
+		} catch (NumberFormatException e) {
+			System.err.println("The number of threads must be a positive number!");
+			usage();
+			System.exit(2);
+			return;
+		}
 
 		Path searchPath = Paths.get(cli.args()[0]).toAbsolutePath();
+		String bundleManifest = cli.option("bundle", null);
+		final ShippedPackages shipped;
+		try {
+			shipped = shippedPackages(cli.option("shipped", "none"));
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			usage();
+			System.exit(2);
+			return;
+		}
+		if (shipped != null && bundleManifest == null) {
+			System.err.println("Shipped packages may only be excluded when bundling!");
+			usage();
+			System.exit(2);
+		}
+		Path snapshot = cli.option("snapshot", "").isEmpty() ? null : Paths.get(cli.option("snapshot", ""));
+
+		long indexStart = System.nanoTime();
+		final DependencyResolver resolver;
+		final Checker checker;
+		ResolverSnapshot opened = null;
+		boolean stale = false;
+		if (bundleManifest == null && snapshot != null && Files.exists(snapshot)) {
+			// an existing snapshot replaces walking the search path; bundling always needs the packages themselves
+			try {
+				opened = ResolverSnapshot.open(snapshot);
+			} catch (IOException e) {
+				System.err.printf("Failed to open snapshot %s: %s%n", snapshot, e.getMessage());
+				System.exit(2);
+				return;
+			}
+			if (!searchPath.equals(opened.rootPath())) {
+				System.err.printf("Snapshot %s is of %s rather than %s, rebuilding it%n", snapshot, opened.rootPath(), searchPath);
+				opened = null;
+				stale = true;
+			}
+		}
+
+		if (opened != null) {
+			resolver = null;
+			checker = new SnapshotChecker(opened);
+		} else {
+			resolver = new DependencyResolver(searchPath, NativePackages.DEFAULT, e -> System.err.println(e.getMessage()));
+			if (snapshot != null && (stale || !Files.exists(snapshot))) ResolverSnapshot.write(resolver, snapshot);
+			checker = new ResolverChecker(resolver);
+		}
+		long indexTime = System.nanoTime() - indexStart;
+
+		if (bundleManifest != null) {
+			boolean found = true;
+			List<UnrealPackage> packages = new ArrayList<>();
+			for (int i = 1; i < cli.args().length; i++) {
+				try {
+					packages.add(findPackage(resolver, cli.args()[i]));
+				} catch (Exception e) {
+					System.err.printf("%s %s: %s%n", BAD, cli.args()[i], e.getMessage());
+					found = false;
+				}
+			}
+
+			Bundle bundle = resolver.bundle(packages, shipped == null ? n -> false : shipped::contains);
+			printBundle(bundle, searchPath, System.out);
+
+			if (!bundleManifest.isEmpty()) {
+				try (Writer writer = Files.newBufferedWriter(Paths.get(bundleManifest))) {
+					bundle.writeManifest(writer, searchPath);
+				}
+			}
+
+			// if any requested or required packages are missing, return exit code 1
+			if (!found || !bundle.missing.isEmpty()) System.exit(1);
+			return;
+		}
 
-		DependencyResolver resolver = new DependencyResolver(searchPath, NativePackages.DEFAULT, e -> System.err.println(e.getMessage()));
+		List<String> namesOrPaths = Arrays.asList(cli.args()).subList(1, cli.args().length);
+		int exitCode = check(checker, namesOrPaths, threads, verbosity, suggest, indexTime, System.out);
+		if (exitCode != 0) System.exit(exitCode);
+	}
 
-		boolean ok = true;
-		for (int i = 1; i < cli.args().length; i++) {
-			UnrealPackage pkg;
+	/**
+	 * Check packages concurrently, printing results in the order requested,
+	 * followed by a summary.
+	 * <p>
+	 * A package which fails to be checked or printed is reported as a
+	 * failure, without affecting the other packages.
+	 *
+	 * @param checker      source of packages and their dependencies
+	 * @param namesOrPaths package file paths, or package names
+	 * @param threads      number of packages to check concurrently
+	 * @param verbosity    amount of information to output
+	 * @param suggest      suggest alternatives for missing imports
+	 * @param indexTime    time taken to index the search path, in nanoseconds
+	 * @param out          output stream to write to
+	 * @return exit code; 1 if any packages were unresolved or failed, else 0
+	 * @throws InterruptedException interrupted while waiting for checks
+	 */
+	static int check(Checker checker, List<String> namesOrPaths, int threads, Verbosity verbosity, boolean suggest,
+					 long indexTime, PrintStream out) throws InterruptedException {
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Result>> futures = new ArrayList<>();
+		for (String nameOrPath : namesOrPaths) {
+			futures.add(executor.submit(() -> Result.check(checker, nameOrPath)));
+		}
+		executor.shutdown();
 
-			Path p = Paths.get(cli.args()[i]).toAbsolutePath();
-			if (Files.exists(p)) pkg = new UnrealPackage(p);
-			else pkg = resolver.findPackage(cli.args()[i]);
+		List<Result> results = new ArrayList<>();
+		for (int i = 0; i < futures.size(); i++) {
+			Result result;
+			try {
+				result = futures.get(i).get();
+			} catch (ExecutionException e) {
+				// checks catch their own failures, so only errors such as running out of memory reach here
+				executor.shutdownNow();
+				if (e.getCause() instanceof Error error) throw error;
+				throw new IllegalStateException(e.getCause());
+			}
 
-			Map<String, Set<Resolved>> resolved = resolver.resolve(pkg);
-			printResolved(pkg, resolved, verbosity, System.out);
+			// printing may build the export index for suggestions, so is isolated in the same way as checking
+			ByteArrayOutputStream printed = new ByteArrayOutputStream();
+			if (result.failure == null) {
+				try {
+					printResolved(result.pkg, result.resolved, verbosity, suggest ? checker::suggest : null, new PrintStream(printed, true));
+				} catch (Exception | StackOverflowError e) {
+					result = Result.failed(result.nameOrPath, e, result.time);
+				}
+			}
+			results.add(result);
 
-			ok = ok && resolved.values().stream().flatMap(Set::stream).allMatch(Resolved::resolved)
-				 && resolved.entrySet().stream().noneMatch(e -> e.getValue().isEmpty());
+			if (result.failure != null) out.printf("%s %s: %s%n", BAD, result.nameOrPath, result.failure);
+			else out.print(printed);
 		}
 
-		// if there are any unresolved packages or files, return exit code 1
-		if (!ok) System.exit(1);
+		printSummary(results, indexTime, System.nanoTime() - start, out);
+
+		// if there are any unresolved or failed packages or files, return exit code 1
+		return results.stream().allMatch(Result::ok) ? 0 : 1;
 	}
 
 	// --- private helpers
 
+	/**
+	 * Find a package to inspect, either by path, or by name from those known
+	 * to the resolver.
+	 *
+	 * @param resolver   resolver to search
+	 * @param nameOrPath package file path, or package name
+	 * @return the package
+	 * @throws IOException reading a package file failed
+	 */
+	private static UnrealPackage findPackage(DependencyResolver resolver, String nameOrPath) throws IOException {
+		Path p = Paths.get(nameOrPath).toAbsolutePath();
+		if (Files.exists(p)) return new UnrealPackage(p);
+		else return resolver.findPackage(nameOrPath);
+	}
+
+	private static ShippedPackages shippedPackages(String game) {
+		return switch (game.toLowerCase()) {
+			case "none" -> null;
+			case "unreal_gold" -> ShippedPackages.UNREAL_GOLD;
+			case "unreal_tournament" -> ShippedPackages.UNREAL_TOURNAMENT;
+			case "unreal_tournament_2004" -> ShippedPackages.UNREAL_TOURNAMENT_2004;
+			case "unreal_tournament_3" -> ShippedPackages.UNREAL_TOURNAMENT_3;
+			case "rune" -> ShippedPackages.RUNE;
+			default -> throw new IllegalArgumentException("Unknown game " + game + "!");
+		};
+	}
+
+	/**
+	 * Prints a summary of all checks performed, with timings, and a list of
+	 * any packages which could not be checked.
+	 *
+	 * @param results   results of all checks
+	 * @param indexTime time taken to index the search path, in nanoseconds
+	 * @param totalTime time taken to check all packages, in nanoseconds
+	 * @param out       output stream to write to
+	 */
+	private static void printSummary(List<Result> results, long indexTime, long totalTime, PrintStream out) {
+		long ok = results.stream().filter(Result::ok).count();
+		long failed = results.stream().filter(r -> r.failure != null).count();
+		out.printf("%nChecked %d packages in %dms (indexing %dms): %d ok, %d unresolved, %d failed%n",
+				   results.size(), totalTime / 1_000_000, indexTime / 1_000_000, ok, results.size() - ok - failed, failed);
+
+		results.stream().max(Comparator.comparingLong(r -> r.time))
+			   .ifPresent(r -> out.printf("Slowest: %s in %dms%n", r.nameOrPath, r.time / 1_000_000));
+
+		results.stream().filter(r -> r.failure != null)
+			   .forEach(r -> out.printf("%s %s: %s%n", BAD, r.nameOrPath, r.failure));
+	}
+
+	/**
+	 * Prints the files within a redistribution bundle, and any packages
+	 * which are required but missing.
+	 *
+	 * @param bundle bundle to print
+	 * @param root   path to which file paths should be relative
+	 * @param out    output stream to write to
+	 */
+	private static void printBundle(Bundle bundle, Path root, PrintStream out) {
+		bundle.files().forEach(f -> out.printf("%s %s%n", OK, Bundle.relative(root, f)));
+		bundle.missing.forEach(m -> out.printf("%s %s%n", BAD, m));
+	}
+
 	/**
 	 * Prints the results of a dependency resolution check, with varying levels
 	 * of output depending on the specified {@link Verbosity}.
 	 *
-	 * @param pkg       the package which was checked
-	 * @param resolved  resolution output from {@link DependencyResolver#resolve(UnrealPackage)}
-	 * @param verbosity amount of information to output, see {@link Verbosity}
-	 * @param out       output stream to write to
+	 * @param pkg         the package which was checked
+	 * @param resolved    resolution output from {@link DependencyResolver#resolve(UnrealPackage)}
+	 * @param verbosity   amount of information to output, see {@link Verbosity}
+	 * @param suggestions source of suggestions for missing imports, by
+	 *                    import path and class, or null to disable suggestions
+	 * @param out         output stream to write to
 	 */
-	private static void printResolved(UnrealPackage pkg, Map<String, Set<Resolved>> resolved, Verbosity verbosity, PrintStream out) {
+	private static void printResolved(UnrealPackage pkg, Map<String, Set<Resolved>> resolved, Verbosity verbosity,
+									  BiFunction<String, String, List<ExportIndex.Entry>> suggestions, PrintStream out) {
 		String fileResolved = resolved.values().stream().flatMap(Set::stream).allMatch(Resolved::resolved)
 							  && resolved.entrySet().stream().noneMatch(e -> e.getValue().isEmpty()) ? OK : BAD;
 		out.printf("%s %s%n", fileResolved, pkg.name);
@@ -94,7 +300,8 @@ public class Main {
 					(!pkgResolved && (verbosity == Verbosity.MISSING_PACKAGES || verbosity == Verbosity.MISSING_DETAIL))) {
 					out.printf("%s %s%s%n", pkgResolved ? OK : BAD, PAD_SIZE, k);
 					if (verbosity == Verbosity.ALL || (!pkgResolved && verbosity == Verbosity.MISSING_DETAIL)) {
-						out.print(prettyResolved(v, verbosity == Verbosity.MISSING_DETAIL, String.format("%s%s", PAD_SIZE, PAD_SIZE)));
+						out.print(prettyResolved(v, verbosity == Verbosity.MISSING_DETAIL, String.format("%s%s", PAD_SIZE, PAD_SIZE),
+												 k, suggestions));
 					}
 				}
 			});
@@ -107,27 +314,38 @@ public class Main {
 	 * @param resolved    package import resolution result
 	 * @param missingOnly only show elements which are missing
 	 * @param padded      depth of padding of the tree
+	 * @param path        full path of the parent of the resolved elements
+	 * @param suggestions source of suggestions for missing imports, by
+	 *                    import path and class, or null to disable suggestions
 	 * @return a printable string
 	 */
-	private static String prettyResolved(Set<Resolved> resolved, boolean missingOnly, String padded) {
+	private static String prettyResolved(Set<Resolved> resolved, boolean missingOnly, String padded, String path,
+										 BiFunction<String, String, List<ExportIndex.Entry>> suggestions) {
 		StringBuilder sb = new StringBuilder();
 		resolved.stream().sorted(Comparator.comparing(r -> r.imported.name)).forEach(r -> {
 			String childPad = String.format("%s%s", PAD_SIZE, padded);
+			String parentPath = String.format("%s.%s", path, r.imported.name.name);
 			boolean parentResolved = r.resolved();
 			if (!missingOnly || !parentResolved) {
 				sb.append(String.format("%s %s%s: %s%n", parentResolved ? OK : BAD,
 										padded, r.imported.name().name, r.imported.className.name));
+				if (r.resolved == null) sb.append(prettySuggestions(r, parentPath, childPad, suggestions));
 			}
 
 			r.children.stream().sorted(Comparator.comparing(child -> child.imported.name)).forEach(child -> {
 				boolean childResolved = child.resolved();
 				if (!missingOnly || !childResolved) {
+					String childPath = String.format("%s.%s", parentPath, child.imported.name.name);
 					sb.append(String.format("%s %s%s: %s%n", childResolved ? OK : BAD,
 											childPad, child.imported.name.name, child.imported.className.name));
+					if (child.resolved == null) {
+						sb.append(prettySuggestions(child, childPath, String.format("%s%s", PAD_SIZE, childPad), suggestions));
+					}
 
 					Set<Resolved> subChildren = child.children;
 					if (!subChildren.isEmpty()) {
-						sb.append(prettyResolved(subChildren, missingOnly, String.format("%s%s", PAD_SIZE, childPad)));
+						sb.append(prettyResolved(subChildren, missingOnly, String.format("%s%s", PAD_SIZE, childPad),
+												 childPath, suggestions));
 					}
 				}
 			});
@@ -136,6 +354,27 @@ public class Main {
 		return sb.toString();
 	}
 
+	/**
+	 * Print possible alternatives for an import which could not be found.
+	 *
+	 * @param missing     an unresolved import
+	 * @param path        full path of the unresolved import
+	 * @param padded      depth of padding of the tree
+	 * @param suggestions source of suggestions, by import path and class, or
+	 *                    null to disable suggestions
+	 * @return a printable string
+	 */
+	private static String prettySuggestions(Resolved missing, String path, String padded, BiFunction<String, String, List<ExportIndex.Entry>> suggestions) {
+		if (suggestions == null) return "";
+		StringBuilder sb = new StringBuilder();
+		suggestions.apply(path, missing.imported.className.name).stream()
+			   .map(e -> e.path)
+			   .distinct()
+			   .sorted()
+			   .forEach(p -> sb.append(String.format("%s %s%s%n", MAYBE, padded, p)));
+		return sb.toString();
+	}
+
 	/**
 	 * Utility to print a package's export tree.
 	 *
@@ -178,6 +417,66 @@ public class Main {
 		return sb.toString();
 	}
 
+	/**
+	 * Checks packages using a resolver over the search path.
+	 */
+	private static class ResolverChecker implements Checker {
+
+		private final DependencyResolver resolver;
+
+		private ResolverChecker(DependencyResolver resolver) {
+			this.resolver = resolver;
+		}
+
+		@Override
+		public UnrealPackage findPackage(String nameOrPath) throws IOException {
+			return Main.findPackage(resolver, nameOrPath);
+		}
+
+		@Override
+		public Map<String, Set<Resolved>> resolve(UnrealPackage pkg) {
+			return resolver.resolve(pkg);
+		}
+
+		@Override
+		public List<ExportIndex.Entry> suggest(String importPath, String className) {
+			return resolver.exports().suggest(importPath, className);
+		}
+	}
+
+	/**
+	 * Checks packages using a previously written snapshot, without walking the
+	 * search path.
+	 */
+	private static class SnapshotChecker implements Checker {
+
+		private final ResolverSnapshot snapshot;
+
+		private SnapshotChecker(ResolverSnapshot snapshot) {
+			this.snapshot = snapshot;
+		}
+
+		@Override
+		public UnrealPackage findPackage(String nameOrPath) throws IOException {
+			Path p = Paths.get(nameOrPath).toAbsolutePath();
+			if (Files.exists(p)) return new UnrealPackage(p);
+
+			List<ResolverSnapshot.PackageSource> found = snapshot.findPackages(nameOrPath);
+			if (found.isEmpty()) throw new NoSuchElementException("Could not find package with name " + nameOrPath);
+			return found.get(0).read();
+		}
+
+		@Override
+		public Map<String, Set<Resolved>> resolve(UnrealPackage pkg) {
+			return snapshot.resolve(pkg);
+		}
+
+		@Override
+		public List<ExportIndex.Entry> suggest(String importPath, String className) {
+			return snapshot.suggest(importPath, className);
+		}
+	}
+
 	private static void usage() {
 		System.out.println("Package Dependency Resolver");
 		System.out.println();
@@ -193,5 +492,20 @@ public class Main {
 		System.out.println("Options:");
 		System.out.println(" --show=[files,all,packages,missing_packages,missing_detail]");
 		System.out.println("   limit printed output");
+		System.out.println(" --suggest=[true,false]");
+		System.out.println("   suggest alternative sources for missing objects, defaults to true");
+		System.out.println(" --threads=[number]");
+		System.out.println("   number of packages to check concurrently, at least 1, defaults to the");
+		System.out.println("   number of CPUs");
+		System.out.println(" --bundle[=manifest file]");
+		System.out.println("   rather than inspecting packages, list the files needed to redistribute the");
+		System.out.println("   packages and everything they depend on, optionally writing a manifest file");
+		System.out.println(" --shipped=[none,unreal_gold,unreal_tournament,unreal_tournament_2004,");
+		System.out.println("            unreal_tournament_3,rune]");
+		System.out.println("   exclude packages shipped with the game from bundles, defaults to none");
+		System.out.println(" --snapshot=[snapshot file]");
+		System.out.println("   check packages against a snapshot of the search path rather than reading it");
+		System.out.println("   every run; the snapshot is written first if the file does not exist, or");
+		System.out.println("   rewritten if it is of a different search path");
 	}
 }
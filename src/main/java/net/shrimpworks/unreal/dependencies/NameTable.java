@@ -0,0 +1,179 @@
+package net.shrimpworks.unreal.dependencies;
+
+/**
+ * A case-insensitive symbol table, which assigns a stable integer id to every
+ * distinct name (ignoring case) added to it.
+ * <p>
+ * Once a name has been interned, looking it up again by any casing does not
+ * allocate, and the resulting ids may be compared directly rather than
+ * comparing or lower-casing strings, which makes this suitable for the name
+ * lookups performed repeatedly while resolving packages.
+ * <p>
+ * Interning is synchronised, while lookups are lock-free and may be performed
+ * concurrently with interning. A lookup racing with the interning of the same
+ * name may not see it.
+ */
+public class NameTable {
+
+	/**
+	 * Result of {@link #lookup(CharSequence)} when a name is not known.
+	 */
+	public static final int NOT_FOUND = -1;
+
+	/**
+	 * Shared table used by default by the native and shipped package sets, so
+	 * that their ids may be compared with each other.
+	 * <p>
+	 * Since names are never removed, this should only hold fixed sets of
+	 * names, not those of arbitrary packages being resolved.
+	 */
+	public static final NameTable DEFAULT = new NameTable();
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private volatile Table table;
+
+	public NameTable() {
+		this.table = new Table(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Add a name to the table, if it is not already known.
+	 *
+	 * @param name name to add, case insensitive
+	 * @return the id of the name
+	 */
+	public synchronized int intern(CharSequence name) {
+		Table t = table;
+		int hash = hash(name);
+		int slot = find(t, name, hash);
+		if (t.slots[slot] != 0) return t.slots[slot] - 1;
+
+		int id = t.size;
+		if (id == t.symbols.length) {
+			t = t.grow();
+			slot = find(t, name, hash);
+		}
+
+		t.symbols[id] = name.toString();
+		t.hashes[id] = hash;
+		t.slots[slot] = id + 1;
+		t.size = id + 1;
+
+		// publishes the new entry and any resized table
+		table = t;
+
+		return id;
+	}
+
+	/**
+	 * Find the id of a name, without adding it to the table.
+	 * <p>
+	 * Does not allocate.
+	 *
+	 * @param name name to find, case insensitive
+	 * @return the id of the name, or {@link #NOT_FOUND} if it is not known
+	 */
+	public int lookup(CharSequence name) {
+		Table t = table;
+		int slot = find(t, name, hash(name));
+		return t.slots[slot] - 1;
+	}
+
+	/**
+	 * Get the name associated with an id. Where a name has been interned with
+	 * varying case, the first variation seen is returned.
+	 *
+	 * @param id name id
+	 * @return the name
+	 * @throws IndexOutOfBoundsException if the id is not known
+	 */
+	public String name(int id) {
+		Table t = table;
+		if (id < 0 || id >= t.size) throw new IndexOutOfBoundsException("Unknown name id " + id);
+		return t.symbols[id];
+	}
+
+	/**
+	 * @return the number of distinct names in the table
+	 */
+	public int size() {
+		return table.size;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("NameTable [size=%d]", size());
+	}
+
+	// --- private helpers
+
+	/**
+	 * Find the slot containing a name, or the empty slot where it should be
+	 * placed.
+	 */
+	private static int find(Table t, CharSequence name, int hash) {
+		int mask = t.slots.length - 1;
+		int slot = hash & mask;
+		while (true) {
+			int entry = t.slots[slot];
+			if (entry == 0) return slot;
+			String symbol = t.symbols[entry - 1];
+			if (symbol != null && t.hashes[entry - 1] == hash && equalsIgnoreCase(symbol, name)) return slot;
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private static int hash(CharSequence name) {
+		int h = 0;
+		for (int i = 0; i < name.length(); i++) {
+			h = 31 * h + fold(name.charAt(i));
+		}
+		// spread low bits, since the table is indexed by mask
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean equalsIgnoreCase(String symbol, CharSequence name) {
+		if (symbol.length() != name.length()) return false;
+		for (int i = 0; i < symbol.length(); i++) {
+			char a = symbol.charAt(i);
+			char b = name.charAt(i);
+			if (a != b && fold(a) != fold(b)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Case folding consistent with {@link String#equalsIgnoreCase(String)}.
+	 */
+	static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static class Table {
+
+		// open-addressed hash slots, holding (id + 1) of a symbol, or 0 if empty
+		private final int[] slots;
+		private final String[] symbols;
+		private final int[] hashes;
+		private int size;
+
+		private Table(int capacity) {
+			this.slots = new int[capacity * 2];
+			this.symbols = new String[capacity];
+			this.hashes = new int[capacity];
+			this.size = 0;
+		}
+
+		private Table grow() {
+			Table grown = new Table(symbols.length * 2);
+			System.arraycopy(symbols, 0, grown.symbols, 0, size);
+			System.arraycopy(hashes, 0, grown.hashes, 0, size);
+			grown.size = size;
+			for (int id = 0; id < size; id++) {
+				grown.slots[find(grown, symbols[id], hashes[id])] = id + 1;
+			}
+			return grown;
+		}
+	}
+}
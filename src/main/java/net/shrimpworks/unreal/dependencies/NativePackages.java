@@ -4,9 +4,10 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -22,14 +23,20 @@ public class NativePackages {
 			"Core", "Engine", "Fire", "IpDrv", "Render", "UWeb", "Window"
 	};
 
-	private final Map<String, NativePackage> packages;
+	private final NameTable names;
+	private final NativePackage[] packages;
 
 	public static final NativePackages DEFAULT = new NativePackages();
 
 	public NativePackages() {
-		this.packages = new HashMap<>();
-		for (String pkg : PACKAGES) {
-			packages.put(pkg.toLowerCase(), new NativePackage(pkg));
+		this(NameTable.DEFAULT);
+	}
+
+	public NativePackages(NameTable names) {
+		this.names = names;
+		this.packages = new NativePackage[PACKAGES.length];
+		for (int i = 0; i < PACKAGES.length; i++) {
+			packages[i] = new NativePackage(names, PACKAGES[i]);
 		}
 	}
 
@@ -40,12 +47,24 @@ public class NativePackages {
 	 * @return a native package for the name requested, or <code>null</code> if not found
 	 */
 	public NativePackage get(String name) {
-		return packages.get(name.toLowerCase());
+		int nameId = names.lookup(name);
+		if (nameId == NameTable.NOT_FOUND) return null;
+		for (NativePackage pkg : packages) {
+			if (pkg.nameId == nameId) return pkg;
+		}
+		return null;
+	}
+
+	/**
+	 * @return all native packages
+	 */
+	public List<NativePackage> packages() {
+		return List.of(packages);
 	}
 
 	@Override
 	public String toString() {
-		return String.format("NativePackages [packages=%s]", packages.values());
+		return String.format("NativePackages [packages=%s]", Arrays.toString(packages));
 	}
 
 	public static class NativePackage {
@@ -53,13 +72,31 @@ public class NativePackages {
 		public final String name;
 		public final Set<String> classes;
 
+		private final NameTable names;
+		private final int nameId;
+		private final BitSet classIds;
+
 		public NativePackage(String name) {
-			this(name, loadClasses(name));
+			this(NameTable.DEFAULT, name);
 		}
 
 		public NativePackage(String name, Set<String> classes) {
+			this(NameTable.DEFAULT, name, classes);
+		}
+
+		public NativePackage(NameTable names, String name) {
+			this(names, name, loadClasses(name));
+		}
+
+		public NativePackage(NameTable names, String name, Set<String> classes) {
 			this.name = name;
 			this.classes = classes;
+			this.names = names;
+			this.nameId = names.intern(name);
+			this.classIds = new BitSet();
+			for (String cls : classes) {
+				classIds.set(names.intern(cls));
+			}
 		}
 
 		/**
@@ -69,7 +106,8 @@ public class NativePackages {
 		 * @return true of this package exports the class
 		 */
 		public boolean contains(String className) {
-			return classes.contains(className.toLowerCase());
+			int classNameId = names.lookup(className);
+			return classNameId != NameTable.NOT_FOUND && classIds.get(classNameId);
 		}
 
 		private static Set<String> loadClasses(String name) {
@@ -0,0 +1,605 @@
+package net.shrimpworks.unreal.dependencies;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import net.shrimpworks.unreal.packages.Package;
+import net.shrimpworks.unreal.packages.PackageReader;
+import net.shrimpworks.unreal.packages.Umod;
+import net.shrimpworks.unreal.packages.entities.Import;
+
+/**
+ * A read-only, memory-mapped snapshot of a {@link DependencyResolver}'s
+ * package names, export index and native package classes.
+ * <p>
+ * Opening a snapshot only maps the file, and lookups are performed by binary
+ * search directly against the mapped data, so there is no indexing or
+ * deserialisation cost at startup. This suits short-lived processes which
+ * would otherwise spend most of their time walking and reading the packages
+ * of a large archive.
+ * <p>
+ * A snapshot may resolve the imports of a package, in the same form as
+ * {@link DependencyResolver#resolve(UnrealPackage)}, but resolved exports are
+ * described by {@link ResolvedIndexedExport} targets, since the original
+ * packages are not available.
+ * <p>
+ * A snapshot records the root path of the resolver it was written from, so
+ * a snapshot of a different search path may be recognised as stale.
+ * <p>
+ * Snapshots are limited to 2GB.
+ * <p>
+ * The mapping is only released once the snapshot is garbage collected, and
+ * on some platforms (notably Windows) the file may not be deleted or
+ * replaced until then.
+ */
+public class ResolverSnapshot {
+
+	private static final int MAGIC = 0x55504453; // UPDS
+	private static final int VERSION = 2;
+
+	private static final int HEADER_SIZE = 13 * Integer.BYTES;
+	private static final int PACKAGE_SIZE = 8 * Integer.BYTES;
+	private static final int EXPORT_SIZE = 9 * Integer.BYTES;
+	private static final int NATIVE_SIZE = 6 * Integer.BYTES;
+
+	private static final int NONE = -1;
+
+	private static final String GROUP_CLASS = "Package";
+
+	private final ByteBuffer data;
+
+	private final int chars;
+	private final int packages;
+	private final int packageCount;
+	private final int exports;
+	private final int exportCount;
+	private final int names;
+	private final int natives;
+	private final int nativeCount;
+
+	private ResolverSnapshot(ByteBuffer data) throws IOException {
+		this.data = data;
+		if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) throw new IOException("Not a resolver snapshot");
+		int version = data.getInt(4);
+		if (version != VERSION) throw new IOException("Unsupported resolver snapshot version " + version);
+
+		this.chars = data.getInt(8);
+		this.packages = data.getInt(12);
+		this.packageCount = data.getInt(16);
+		this.exports = data.getInt(20);
+		this.exportCount = data.getInt(24);
+		this.names = data.getInt(28);
+		this.natives = data.getInt(32);
+		this.nativeCount = data.getInt(36);
+
+		// tables and character data must lie within the file, so lookups never read outside it
+		int charsLength = data.getInt(40);
+		checkTable("packages", packages, packageCount, PACKAGE_SIZE);
+		checkTable("exports", exports, exportCount, EXPORT_SIZE);
+		checkTable("names", names, exportCount, Integer.BYTES);
+		checkTable("natives", natives, nativeCount, NATIVE_SIZE);
+		checkTable("characters", chars, charsLength, Character.BYTES);
+		int rootStart = data.getInt(44);
+		int rootLength = data.getInt(48);
+		if (rootStart != NONE && (rootStart < 0 || rootLength < 0 || (long)rootStart + rootLength > charsLength)) {
+			throw new IOException("Invalid resolver snapshot root path");
+		}
+	}
+
+	/**
+	 * Open a snapshot previously written by {@link #write(DependencyResolver, Path)}.
+	 *
+	 * @param file snapshot file
+	 * @return the snapshot
+	 * @throws IOException the file could not be read, or is not a snapshot
+	 */
+	public static ResolverSnapshot open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new ResolverSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Write a snapshot of a resolver's known packages, exports and native
+	 * packages.
+	 * <p>
+	 * This will build the resolver's {@link DependencyResolver#exports()}
+	 * index if it has not been built yet.
+	 *
+	 * @param resolver resolver to snapshot
+	 * @param file     file to write to
+	 * @throws IOException writing failed
+	 */
+	public static void write(DependencyResolver resolver, Path file) throws IOException {
+		List<UnrealPackage> packages = resolver.knownPackages.values().stream().flatMap(Set::stream).toList();
+
+		// write alongside the destination and move into place, so a failed write never leaves a partial snapshot
+		Path dir = file.toAbsolutePath().getParent();
+		Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+		try {
+			try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+				write(resolver.rootPath, packages, resolver.exports(), resolver.nativePackages(), out);
+			}
+			Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	static void write(Path rootPath, Collection<UnrealPackage> packages, ExportIndex exports, NativePackages nativePackages,
+					  OutputStream out) throws IOException {
+		StringPool pool = new StringPool();
+		int root = pool.ref(rootPath == null ? null : rootPath.toAbsolutePath().toString());
+
+		// packages, ordered by folded name
+		List<int[]> packageRows = new ArrayList<>();
+		for (UnrealPackage pkg : packages) {
+			packageRows.add(new int[] {
+				pool.ref(fold(pkg.name)), pool.ref(pkg.name),
+				pool.ref(pkg.path == null ? null : pkg.path.toString()), pool.ref(pkg.umodFile)
+			});
+		}
+		packageRows.sort(pool.byRef(r -> r[0]));
+
+		// exports, ordered by folded path, and then separately by folded object name
+		List<ExportIndex.Entry> entries = exports.entries();
+		List<int[]> exportRows = new ArrayList<>(entries.size());
+		for (ExportIndex.Entry e : entries) {
+			// the object name is held as an offset within the folded path, which shares the same characters
+			exportRows.add(new int[] {
+				pool.ref(fold(e.path)), pool.ref(e.path), pool.ref(e.className), pool.ref(e.packageName),
+				e.path.lastIndexOf('.') + 1
+			});
+		}
+		exportRows.sort(pool.byRef(r -> r[0]));
+		String[] exportNames = new String[exportRows.size()];
+		List<Integer> byName = new ArrayList<>(exportRows.size());
+		for (int i = 0; i < exportRows.size(); i++) {
+			exportNames[i] = pool.string(exportRows.get(i)[0]).substring(exportRows.get(i)[4]);
+			byName.add(i);
+		}
+		byName.sort((a, b) -> {
+			int res = exportNames[a].compareTo(exportNames[b]);
+			return res != 0 ? res : Integer.compare(a, b);
+		});
+
+		// native classes, ordered by folded Package.Class
+		List<int[]> nativeRows = new ArrayList<>();
+		for (NativePackages.NativePackage nativePackage : nativePackages.packages()) {
+			for (String cls : nativePackage.classes) {
+				nativeRows.add(new int[] {
+					pool.ref(fold(nativePackage.name + "." + cls)), pool.ref(nativePackage.name), pool.ref(cls)
+				});
+			}
+		}
+		nativeRows.sort(pool.byRef(r -> r[0]));
+
+		int packagesPos = HEADER_SIZE;
+		int exportsPos = packagesPos + packageRows.size() * PACKAGE_SIZE;
+		int namesPos = exportsPos + exportRows.size() * EXPORT_SIZE;
+		int nativesPos = namesPos + byName.size() * Integer.BYTES;
+		int charsPos = nativesPos + nativeRows.size() * NATIVE_SIZE;
+		if ((long)charsPos + pool.chars.length() * 2L > Integer.MAX_VALUE) throw new IOException("Snapshot too large");
+
+		DataOutputStream dos = new DataOutputStream(out);
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+		dos.writeInt(charsPos);
+		dos.writeInt(packagesPos);
+		dos.writeInt(packageRows.size());
+		dos.writeInt(exportsPos);
+		dos.writeInt(exportRows.size());
+		dos.writeInt(namesPos);
+		dos.writeInt(nativesPos);
+		dos.writeInt(nativeRows.size());
+		dos.writeInt(pool.chars.length());
+		pool.write(dos, root);
+
+		for (int[] row : packageRows) pool.write(dos, row);
+		for (int[] row : exportRows) {
+			pool.write(dos, row[0], row[1], row[2], row[3]);
+			dos.writeInt(row[4]);
+		}
+		for (int i : byName) dos.writeInt(i);
+		for (int[] row : nativeRows) pool.write(dos, row);
+		dos.writeChars(pool.chars.toString());
+		dos.flush();
+	}
+
+	/**
+	 * @return the root path of the resolver the snapshot was written from,
+	 * 	or null if not known
+	 */
+	public Path rootPath() {
+		String root = string(44);
+		return root == null ? null : Paths.get(root);
+	}
+
+	/**
+	 * @return the number of packages known to the snapshot
+	 */
+	public int packageCount() {
+		return packageCount;
+	}
+
+	/**
+	 * @return the number of exports known to the snapshot
+	 */
+	public int exportCount() {
+		return exportCount;
+	}
+
+	/**
+	 * Find the sources of a package by name (case insensitive).
+	 *
+	 * @param pkgName package name
+	 * @return all sources of the package, or an empty list if not known
+	 */
+	public List<PackageSource> findPackages(String pkgName) {
+		List<PackageSource> found = new ArrayList<>();
+		for (int i = lowerBound(packages, PACKAGE_SIZE, packageCount, pkgName, false);
+			 i < packageCount && compare(packages + i * PACKAGE_SIZE, pkgName, false) == 0; i++) {
+			int row = packages + i * PACKAGE_SIZE;
+			String path = string(row + 16);
+			found.add(new PackageSource(string(row + 8), path == null ? null : Paths.get(path), string(row + 24)));
+		}
+		return found;
+	}
+
+	/**
+	 * Check whether a package is known (case insensitive).
+	 * <p>
+	 * Does not allocate.
+	 *
+	 * @param pkgName package name
+	 * @return true if the package is known
+	 */
+	public boolean contains(String pkgName) {
+		int i = lowerBound(packages, PACKAGE_SIZE, packageCount, pkgName, false);
+		return i < packageCount && compare(packages + i * PACKAGE_SIZE, pkgName, false) == 0;
+	}
+
+	/**
+	 * Find an export by its fully-qualified path (case-insensitive).
+	 *
+	 * @param path path to find, in the form <code>Package.Group.Name</code>
+	 * @return matching exports, or an empty list if none were found
+	 * @see ExportIndex#find(String)
+	 */
+	public List<ExportIndex.Entry> find(String path) {
+		List<ExportIndex.Entry> found = new ArrayList<>();
+		for (int i = lowerBound(exports, EXPORT_SIZE, exportCount, path, false);
+			 i < exportCount && compare(exports + i * EXPORT_SIZE, path, false) == 0; i++) {
+			found.add(export(i));
+		}
+		return found;
+	}
+
+	/**
+	 * Check whether an export exists with the given fully-qualified path
+	 * (case-insensitive).
+	 * <p>
+	 * Does not allocate.
+	 *
+	 * @param path path to find, in the form <code>Package.Group.Name</code>
+	 * @return true if the export exists
+	 */
+	public boolean containsExport(String path) {
+		int i = lowerBound(exports, EXPORT_SIZE, exportCount, path, false);
+		return i < exportCount && compare(exports + i * EXPORT_SIZE, path, false) == 0;
+	}
+
+	/**
+	 * Find all exports with a path beginning with the prefix provided
+	 * (case-insensitive).
+	 *
+	 * @param prefix path prefix to search for
+	 * @return matching exports, or an empty list if none were found
+	 * @see ExportIndex#prefix(String)
+	 */
+	public List<ExportIndex.Entry> prefix(String prefix) {
+		List<ExportIndex.Entry> found = new ArrayList<>();
+		for (int i = lowerBound(exports, EXPORT_SIZE, exportCount, prefix, false);
+			 i < exportCount && compare(exports + i * EXPORT_SIZE, prefix, true) == 0; i++) {
+			found.add(export(i));
+		}
+		return found;
+	}
+
+	/**
+	 * Find all exports with the given object name, regardless of the package
+	 * or group they are contained in (case-insensitive).
+	 *
+	 * @param name object name
+	 * @return matching exports, or an empty list if none were found
+	 * @see ExportIndex#named(String)
+	 */
+	public List<ExportIndex.Entry> named(String name) {
+		int low = 0;
+		int high = exportCount;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compareName(mid, name) < 0) low = mid + 1;
+			else high = mid;
+		}
+		List<ExportIndex.Entry> found = new ArrayList<>();
+		for (int i = low; i < exportCount && compareName(i, name) == 0; i++) {
+			found.add(export(data.getInt(names + i * Integer.BYTES)));
+		}
+		return found;
+	}
+
+	/**
+	 * Suggest exports which may satisfy an import which could not be resolved.
+	 *
+	 * @param importPath full path of the import
+	 * @param className  the class of the import
+	 * @return possible alternatives for the import
+	 * @see ExportIndex#suggest(String, String)
+	 */
+	public List<ExportIndex.Entry> suggest(String importPath, String className) {
+		if (className.equalsIgnoreCase(GROUP_CLASS)) return List.of();
+
+		int dot = importPath.indexOf('.');
+		String pkgName = dot < 0 ? importPath : importPath.substring(0, dot);
+		List<ExportIndex.Entry> found = new ArrayList<>();
+		for (ExportIndex.Entry e : named(importPath.substring(importPath.lastIndexOf('.') + 1))) {
+			if (e.className.equalsIgnoreCase(className) && !e.packageName.equalsIgnoreCase(pkgName)) found.add(e);
+		}
+		return found;
+	}
+
+	/**
+	 * Check whether a native package exports a class.
+	 * <p>
+	 * See {@link NativePackages}.
+	 *
+	 * @param pkgName   native package name, case insensitive
+	 * @param className class name, case insensitive
+	 * @return true if the native package exports the class
+	 */
+	public boolean nativeClass(String pkgName, String className) {
+		String key = pkgName + "." + className;
+		int i = lowerBound(natives, NATIVE_SIZE, nativeCount, key, false);
+		return i < nativeCount && compare(natives + i * NATIVE_SIZE, key, false) == 0;
+	}
+
+	/**
+	 * Resolve a packages dependencies using the snapshot.
+	 * <p>
+	 * Equivalent to {@link DependencyResolver#resolve(UnrealPackage)}, except
+	 * that all packages with the same name are treated as one, and resolved
+	 * exports are represented by {@link ResolvedIndexedExport}.
+	 *
+	 * @param unrealPackage package to resolve dependencies for
+	 * @return resolution result
+	 */
+	public Map<String, Set<Resolved>> resolve(UnrealPackage unrealPackage) {
+		Map<String, Set<Resolved>> importPackages = new HashMap<>();
+		for (Import rootImport : unrealPackage.pkg.packageImports()) {
+			boolean known = contains(rootImport.name.name);
+			Set<Resolved> candidates = new HashSet<>();
+			for (Import i : rootImport.children()) {
+				String path = rootImport.name.name + "." + i.name.name;
+				if (known && !containsExport(path) && nativeClass(rootImport.name.name, i.name.name)) {
+					candidates.add(new Resolved(i, Resolved.ResolvedTarget.nativeClass(rootImport.name.name, i.name.name),
+												Collections.emptySet()));
+				} else {
+					candidates.add(resolve(i, known ? path : null));
+				}
+			}
+			importPackages.put(rootImport.name.name, candidates);
+		}
+		return importPackages;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ResolverSnapshot [packages=%d, exports=%d, natives=%d]", packageCount, exportCount, nativeCount);
+	}
+
+	// --- private helpers
+
+	private void checkTable(String table, int pos, int count, int rowSize) throws IOException {
+		if (pos < HEADER_SIZE || count < 0 || pos + (long)count * rowSize > data.capacity()) {
+			throw new IOException(String.format("Invalid resolver snapshot %s table at %d with %d rows", table, pos, count));
+		}
+	}
+
+	private Resolved resolve(Import anImport, String path) {
+		ExportIndex.Entry found = null;
+		if (path != null) {
+			List<ExportIndex.Entry> exports = find(path);
+			if (!exports.isEmpty()) found = exports.get(0);
+		}
+
+		Set<Resolved> children = new HashSet<>();
+		for (Import i : anImport.children()) {
+			children.add(resolve(i, found == null ? null : path + "." + i.name.name));
+		}
+		return new Resolved(anImport, found == null ? null : new ResolvedIndexedExport(found), children);
+	}
+
+	private ExportIndex.Entry export(int i) {
+		int row = exports + i * EXPORT_SIZE;
+		return new ExportIndex.Entry(string(row + 24), string(row + 8), string(row + 16));
+	}
+
+	/**
+	 * Binary search for the first row in a table with a key not less than
+	 * the query. The key of every table is the first string reference of
+	 * each row.
+	 */
+	private int lowerBound(int table, int rowSize, int count, CharSequence query, boolean prefix) {
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(table + mid * rowSize, query, prefix) < 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	private int compareName(int nameRow, CharSequence query) {
+		int row = exports + data.getInt(names + nameRow * Integer.BYTES) * EXPORT_SIZE;
+		int nameStart = data.getInt(row + 32);
+		return compare(data.getInt(row) + nameStart, data.getInt(row + 4) - nameStart, query, false);
+	}
+
+	/**
+	 * Compare the folded string referenced at a position with a query, which
+	 * is folded as it is compared.
+	 */
+	private int compare(int ref, CharSequence query, boolean prefix) {
+		return compare(data.getInt(ref), data.getInt(ref + 4), query, prefix);
+	}
+
+	private int compare(int start, int length, CharSequence query, boolean prefix) {
+		int pos = chars + start * 2;
+		int len = prefix ? Math.min(length, query.length()) : length;
+		int n = Math.min(len, query.length());
+		for (int i = 0; i < n; i++) {
+			char a = data.getChar(pos + i * 2);
+			char b = NameTable.fold(query.charAt(i));
+			if (a != b) return Character.compare(a, b);
+		}
+		if (prefix && length >= query.length()) return 0;
+		return Integer.compare(len, query.length());
+	}
+
+	private String string(int ref) {
+		int start = data.getInt(ref);
+		if (start == NONE) return null;
+		int length = data.getInt(ref + 4);
+		char[] result = new char[length];
+		for (int i = 0; i < length; i++) result[i] = data.getChar(chars + (start + i) * 2);
+		return new String(result);
+	}
+
+	private static String fold(String s) {
+		char[] folded = new char[s.length()];
+		for (int i = 0; i < folded.length; i++) folded[i] = NameTable.fold(s.charAt(i));
+		return new String(folded);
+	}
+
+	/**
+	 * De-duplicated character data for all strings in the snapshot, with
+	 * strings referenced by character position and length.
+	 */
+	private static class StringPool {
+
+		private final StringBuilder chars = new StringBuilder();
+		private final Map<String, Integer> positions = new HashMap<>();
+		private final List<String> strings = new ArrayList<>();
+		private final List<int[]> refs = new ArrayList<>();
+
+		private int ref(String s) {
+			if (s == null) return NONE;
+			return positions.computeIfAbsent(s, k -> {
+				refs.add(new int[] { chars.length(), k.length() });
+				strings.add(k);
+				chars.append(k);
+				return refs.size() - 1;
+			});
+		}
+
+		private String string(int ref) {
+			return strings.get(ref);
+		}
+
+		private Comparator<int[]> byRef(Function<int[], Integer> key) {
+			return Comparator.comparing(row -> strings.get(key.apply(row)));
+		}
+
+		private void write(DataOutputStream out, int... row) throws IOException {
+			for (int ref : row) {
+				if (ref == NONE) {
+					out.writeInt(NONE);
+					out.writeInt(0);
+				} else {
+					out.writeInt(refs.get(ref)[0]);
+					out.writeInt(refs.get(ref)[1]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Location of a package known to a snapshot.
+	 */
+	public static class PackageSource {
+
+		public final String name;
+		public final Path path;
+		public final String umodFile;
+
+		public PackageSource(String name, Path path, String umodFile) {
+			this.name = name;
+			this.path = path;
+			this.umodFile = umodFile;
+		}
+
+		/**
+		 * Read the package from its file, or from within its umod.
+		 *
+		 * @return the package
+		 * @throws IOException the package could not be read, or is no
+		 *                     longer present within its umod
+		 */
+		public UnrealPackage read() throws IOException {
+			if (path == null) throw new IOException("No file known for package " + name);
+			if (umodFile == null) return new UnrealPackage(name, new Package(path), path, null);
+
+			try (Umod umod = new Umod(path)) {
+				for (Umod.UmodFile file : umod.files) {
+					if (file.name.equals(umodFile)) {
+						return new UnrealPackage(name, new Package(new PackageReader(file.read())), path, umodFile);
+					}
+				}
+			}
+			throw new IOException(String.format("Package %s not found in umod %s", umodFile, path));
+		}
+
+		@Override
+		public String toString() {
+			return String.format("PackageSource [name=%s, path=%s, umodFile=%s]", name, path, umodFile);
+		}
+	}
+
+	/**
+	 * An import resolved to an export known to a snapshot.
+	 */
+	public static class ResolvedIndexedExport implements Resolved.ResolvedTarget {
+
+		public final ExportIndex.Entry exported;
+
+		public ResolvedIndexedExport(ExportIndex.Entry exported) {
+			this.exported = exported;
+		}
+
+		@Override
+		public String name() {
+			return exported.name();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package net.shrimpworks.unreal.dependencies;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Outcome of checking a single package. A package which could not be
+ * found or read results in a failure, rather than aborting other checks.
+ */
+class Result {
+
+	final String nameOrPath;
+	final UnrealPackage pkg;
+	final Map<String, Set<Resolved>> resolved;
+	final String failure;
+	final long time;
+
+	private Result(String nameOrPath, UnrealPackage pkg, Map<String, Set<Resolved>> resolved, String failure, long time) {
+		this.nameOrPath = nameOrPath;
+		this.pkg = pkg;
+		this.resolved = resolved;
+		this.failure = failure;
+		this.time = time;
+	}
+
+	/**
+	 * Find and resolve a package.
+	 * <p>
+	 * Exceptions, and stack overflows caused by corrupt packages with cyclic
+	 * references, result in a failure. Other errors, such as running out of
+	 * memory, are not specific to the package and are thrown.
+	 *
+	 * @param checker    source of the package and its dependencies
+	 * @param nameOrPath package file path, or package name
+	 * @return the result
+	 */
+	static Result check(Checker checker, String nameOrPath) {
+		long start = System.nanoTime();
+		try {
+			UnrealPackage pkg = checker.findPackage(nameOrPath);
+			return new Result(nameOrPath, pkg, checker.resolve(pkg), null, System.nanoTime() - start);
+		} catch (Exception | StackOverflowError e) {
+			return failed(nameOrPath, e, System.nanoTime() - start);
+		}
+	}
+
+	static Result failed(String nameOrPath, Throwable cause, long time) {
+		String failure = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+		return new Result(nameOrPath, null, null, failure, time);
+	}
+
+	boolean ok() {
+		return failure == null
+			   && resolved.values().stream().flatMap(Set::stream).allMatch(Resolved::resolved)
+			   && resolved.entrySet().stream().noneMatch(e -> e.getValue().isEmpty());
+	}
+}
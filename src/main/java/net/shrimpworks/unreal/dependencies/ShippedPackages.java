@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -13,14 +14,19 @@ import java.util.Set;
  */
 public class ShippedPackages {
 
-	private final Set<String> packages;
+	private final NameTable names;
+	private final BitSet packages;
 
-	private ShippedPackages(Set<String> packages) {
-		this.packages = packages;
+	private ShippedPackages(NameTable names, Set<String> packages) {
+		this.names = names;
+		this.packages = new BitSet();
+		for (String pkg : packages) {
+			this.packages.set(names.intern(pkg));
+		}
 	}
 
 	private ShippedPackages(String gameName) {
-		this(loadPackages(gameName));
+		this(NameTable.DEFAULT, loadPackages(gameName));
 	}
 
 	/**
@@ -32,7 +38,8 @@ public class ShippedPackages {
 	 * @return true if the package ships with the game
 	 */
 	public boolean contains(String packageName) {
-		return packages.contains(packageName.toLowerCase());
+		int packageNameId = names.lookup(packageName);
+		return packageNameId != NameTable.NOT_FOUND && packages.get(packageNameId);
 	}
 
 	public static final ShippedPackages UNREAL_GOLD = new ShippedPackages("UnrealGold");
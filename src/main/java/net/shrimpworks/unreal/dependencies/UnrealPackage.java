@@ -10,13 +10,31 @@ public class UnrealPackage {
 	public final String name;
 	public final Package pkg;
 
+	/**
+	 * The file the package was read from - either the package file itself,
+	 * or the umod containing it. May be null if unknown.
+	 */
+	public final Path path;
+
+	/**
+	 * Name of the package within the umod at {@link #path}, or null if the
+	 * package was not read from a umod.
+	 */
+	public final String umodFile;
+
 	public UnrealPackage(Path path) throws IOException {
-		this(plainName(path), new Package(path));
+		this(plainName(path), new Package(path), path, null);
 	}
 
 	public UnrealPackage(String name, Package pkg) {
+		this(name, pkg, null, null);
+	}
+
+	public UnrealPackage(String name, Package pkg, Path path, String umodFile) {
 		this.name = name;
 		this.pkg = pkg;
+		this.path = path;
+		this.umodFile = umodFile;
 	}
 
 	static String plainName(Path path) {
@@ -31,6 +49,6 @@ public class UnrealPackage {
 
 	@Override
 	public String toString() {
-		return String.format("UnrealPackage [name=%s, pkg=%s]", name, pkg);
+		return String.format("UnrealPackage [name=%s, path=%s, umodFile=%s, pkg=%s]", name, path, umodFile, pkg);
 	}
 }
@@ -0,0 +1,71 @@
+package net.shrimpworks.unreal.dependencies;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class BundleTest {
+
+	private static final Path UMOD = Paths.get("UMods", "Stuff.umod");
+	private static final Path OTHER_UMOD = Paths.get("UMods", "MoreStuff.umod");
+	private static final Path LOOSE = Paths.get("System", "B.u");
+
+	@Test
+	public void reuseRequiredUmod() {
+		// A is only available in the umod, B is both loose and in the same umod
+		Map<String, List<UnrealPackage>> sources = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		sources.put("A", List.of(new UnrealPackage("A", null, UMOD, "System\\A.u")));
+		sources.put("B", List.of(new UnrealPackage("B", null, LOOSE, null),
+								 new UnrealPackage("B", null, UMOD, "System\\B.u")));
+
+		Map<String, Bundle.Entry> entries = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		Bundle.select(sources, entries);
+
+		assertEquals(UMOD, entries.get("A").path);
+		assertEquals(UMOD, entries.get("B").path);
+		assertEquals("System\\B.u", entries.get("B").umodFile);
+	}
+
+	@Test
+	public void preferLooseFiles() {
+		// nothing else requires the umod, so the loose file is preferred
+		Map<String, List<UnrealPackage>> sources = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		sources.put("B", List.of(new UnrealPackage("B", null, LOOSE, null),
+								 new UnrealPackage("B", null, UMOD, "System\\B.u")));
+
+		Map<String, Bundle.Entry> entries = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		Bundle.select(sources, entries);
+
+		assertEquals(LOOSE, entries.get("B").path);
+		assertNull(entries.get("B").umodFile);
+	}
+
+	@Test
+	public void reuseUmodAcrossUmodOnlyPackages() {
+		// C is in two umods, but one of them is already required by A
+		Map<String, List<UnrealPackage>> sources = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		sources.put("A", List.of(new UnrealPackage("A", null, UMOD, "System\\A.u")));
+		sources.put("C", List.of(new UnrealPackage("C", null, OTHER_UMOD, "System\\C.u"),
+								 new UnrealPackage("C", null, UMOD, "System\\C.u")));
+
+		Map<String, Bundle.Entry> entries = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		Bundle.select(sources, entries);
+
+		assertEquals(UMOD, entries.get("C").path);
+	}
+
+	@Test
+	public void relativePaths() {
+		Path root = Paths.get("game").toAbsolutePath();
+		assertEquals(Paths.get("Maps", "DM-Test.unr").toString(), Bundle.relative(root, root.resolve("Maps").resolve("DM-Test.unr")));
+		assertEquals(Paths.get("other").toAbsolutePath().toString(), Bundle.relative(root, Paths.get("other")));
+		assertEquals("file.u", Bundle.relative(null, Paths.get("file.u")));
+	}
+}
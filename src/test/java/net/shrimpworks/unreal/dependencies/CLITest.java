@@ -0,0 +1,24 @@
+package net.shrimpworks.unreal.dependencies;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class CLITest {
+
+	@Test
+	public void parseOptions() {
+		CLI cli = CLI.parse(Map.of("show", "all"), "--bundle", "/games/ut", "--shipped=unreal_tournament", "DM-Test", "--manifest=");
+
+		assertArrayEquals(new String[] { "/games/ut", "DM-Test" }, cli.args());
+		assertEquals("", cli.option("bundle", null));
+		assertEquals("", cli.option("manifest", null));
+		assertEquals("unreal_tournament", cli.option("shipped", null));
+		assertEquals("all", cli.option("show", null));
+		assertNull(cli.option("threads", null));
+	}
+}
@@ -0,0 +1,622 @@
+package net.shrimpworks.unreal.dependencies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * Generates deterministic trees of synthetic Unreal packages and umods, for
+ * testing the resolver at scale.
+ * <p>
+ * Packages are written in the Unreal Engine 1 (version 69) format, each
+ * exporting a number of texture objects within groups, and importing objects
+ * from other generated packages. Minimal <code>Core</code> and
+ * <code>Engine</code> packages providing the classes used are always
+ * included.
+ * <p>
+ * The generator records which packages are expected to resolve completely,
+ * and how each corrupt file was damaged, so results may be verified.
+ */
+public class CorpusGenerator {
+
+	private static final int PKG_SIGNATURE = 0x9E2A83C1;
+	private static final int UMOD_SIGNATURE = 0x9FE3C5A3;
+	private static final int PKG_VERSION = 69;
+	private static final int PKG_HEADER_SIZE = 64;
+	private static final int NAME_FLAGS = 0x00070010;
+	private static final int OBJECT_FLAGS = 0x00070004;
+
+	// fixed import indexes present in every generated package
+	private static final int IMPORT_TEXTURE_CLASS = -3;
+	private static final int IMPORT_PACKAGE_CLASS = -4;
+
+	private long seed = 1;
+	private int packages = 1000;
+	private int maps = 100;
+	private int groups = 2;
+	private int exports = 5;
+	private int dependencies = 3;
+	private int importsPerDependency = 4;
+	private double umodRate = 0.1;
+	private double collisionRate = 0.02;
+	private double missingRate = 0.05;
+	private double corruptRate = 0.02;
+
+	public CorpusGenerator seed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * @param packages number of library packages to generate, excluding maps
+	 * @return this generator
+	 */
+	public CorpusGenerator packages(int packages) {
+		if (packages < 0) throw new IllegalArgumentException("Packages may not be negative");
+		this.packages = packages;
+		return this;
+	}
+
+	/**
+	 * @param maps number of maps to generate, which depend on library packages
+	 * @return this generator
+	 */
+	public CorpusGenerator maps(int maps) {
+		if (maps < 0) throw new IllegalArgumentException("Maps may not be negative");
+		this.maps = maps;
+		return this;
+	}
+
+	/**
+	 * @param groups  groups within each package
+	 * @param exports exports within each group
+	 * @return this generator
+	 */
+	public CorpusGenerator exports(int groups, int exports) {
+		// imports are chosen from other packages' exports, so there must be some
+		if (groups < 1 || exports < 1) throw new IllegalArgumentException("At least one group and export are required");
+		this.groups = groups;
+		this.exports = exports;
+		return this;
+	}
+
+	/**
+	 * @param dependencies         packages each package imports from
+	 * @param importsPerDependency objects imported from each dependency
+	 * @return this generator
+	 */
+	public CorpusGenerator imports(int dependencies, int importsPerDependency) {
+		if (dependencies < 0 || importsPerDependency < 0) throw new IllegalArgumentException("Imports may not be negative");
+		this.dependencies = dependencies;
+		this.importsPerDependency = importsPerDependency;
+		return this;
+	}
+
+	/**
+	 * @param umodRate proportion of library packages to be placed in umods
+	 * @return this generator
+	 */
+	public CorpusGenerator umods(double umodRate) {
+		this.umodRate = rate(umodRate);
+		return this;
+	}
+
+	/**
+	 * @param collisionRate proportion of library packages to also write a
+	 *                      second copy of, with the same name in a different
+	 *                      case, elsewhere in the tree
+	 * @return this generator
+	 */
+	public CorpusGenerator collisions(double collisionRate) {
+		this.collisionRate = rate(collisionRate);
+		return this;
+	}
+
+	/**
+	 * @param missingRate proportion of packages which import a package or
+	 *                    object which does not exist
+	 * @return this generator
+	 */
+	public CorpusGenerator missing(double missingRate) {
+		this.missingRate = rate(missingRate);
+		return this;
+	}
+
+	/**
+	 * @param corruptRate proportion of additional files to write which have
+	 *                    package file extensions, but are not valid
+	 *                    packages; each kind of {@link Corruption} is
+	 *                    written in turn
+	 * @return this generator
+	 */
+	public CorpusGenerator corrupt(double corruptRate) {
+		this.corruptRate = rate(corruptRate);
+		return this;
+	}
+
+	/**
+	 * Generate a corpus.
+	 *
+	 * @param root directory to write files into
+	 * @return description of the generated corpus
+	 * @throws IOException writing failed
+	 */
+	public Corpus generate(Path root) throws IOException {
+		Random random = new Random(seed);
+		Corpus corpus = new Corpus(root);
+
+		Path system = Files.createDirectories(root.resolve("System"));
+		Path textures = Files.createDirectories(root.resolve("Textures"));
+		Path mapsDir = Files.createDirectories(root.resolve("Maps"));
+		Path umodsDir = Files.createDirectories(root.resolve("UMods"));
+		Path collisionsDir = Files.createDirectories(root.resolve("Collisions"));
+
+		writeFile(system.resolve("Core.u"), corePackage(), corpus);
+		writeFile(system.resolve("Engine.u"), enginePackage(), corpus);
+		corpus.expected.put("Core", true);
+		corpus.expected.put("Engine", true);
+
+		List<String> library = new ArrayList<>();
+		for (int i = 0; i < packages; i++) library.add(String.format("Lib%05d", i));
+
+		Map<String, byte[]> umodContents = new LinkedHashMap<>();
+		for (int i = 0; i < packages + maps; i++) {
+			boolean map = i >= packages;
+			String name = map ? String.format("DM-Gen%05d", i - packages) : library.get(i);
+
+			GeneratedPackage pkg = generatePackage(name, random, library, corpus);
+			byte[] bytes = pkg.bytes();
+			corpus.expected.put(name, pkg.resolvable);
+
+			if (map) {
+				writeFile(mapsDir.resolve(name + ".unr"), bytes, corpus);
+			} else if (random.nextDouble() < umodRate) {
+				umodContents.put(String.format("System\\%s.u", name), bytes);
+				if (umodContents.size() >= 5) writeUmod(umodsDir, umodContents, corpus);
+			} else {
+				writeFile(textures.resolve(name + ".utx"), bytes, corpus);
+			}
+
+			if (!map && random.nextDouble() < collisionRate) {
+				writeFile(collisionsDir.resolve(name.toUpperCase() + ".utx"), bytes, corpus);
+				corpus.collisions++;
+			}
+		}
+		if (!umodContents.isEmpty()) writeUmod(umodsDir, umodContents, corpus);
+
+		// corrupt files start as valid packages, but what they import is not recorded as part of the corpus
+		Corpus scratch = new Corpus(root);
+		int corrupt = (int)Math.round((packages + maps) * corruptRate);
+		for (int i = 0; i < corrupt; i++) {
+			String name = String.format("Corrupt%05d", i);
+			Corruption corruption = Corruption.values()[i % Corruption.values().length];
+			writeFile(textures.resolve(name + ".utx"), corrupt(corruption, generatePackage(name, random, library, scratch), random), corpus);
+			corpus.corrupted.put(name, corruption);
+			corpus.corrupt++;
+		}
+
+		return corpus;
+	}
+
+	/**
+	 * Recursively delete a generated corpus.
+	 *
+	 * @param root directory to delete
+	 * @throws IOException deletion failed
+	 */
+	public static void delete(Path root) throws IOException {
+		if (!Files.exists(root)) return;
+		Files.walkFileTree(root, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	// --- private helpers
+
+	private GeneratedPackage generatePackage(String name, Random random, List<String> library, Corpus corpus) {
+		GeneratedPackage pkg = new GeneratedPackage();
+
+		// exports: groups of textures
+		for (int g = 0; g < groups; g++) {
+			int group = pkg.export(IMPORT_PACKAGE_CLASS, 0, groupName(g));
+			for (int e = 0; e < exports; e++) {
+				pkg.export(IMPORT_TEXTURE_CLASS, group, exportName(name, g, e));
+			}
+		}
+
+		// imports: objects from other library packages
+		Set<String> deps = new TreeSet<>();
+		for (int d = 0; d < dependencies && !library.isEmpty(); d++) {
+			String dep = library.get(random.nextInt(library.size()));
+			if (!dep.equals(name)) deps.add(dep);
+		}
+		Map<String, Map<Integer, Integer>> groupImports = new HashMap<>();
+		Set<String> imported = new HashSet<>();
+		for (String dep : deps) {
+			int depImport = pkg.importObject("Core", "Package", 0, dep);
+			Map<Integer, Integer> depGroups = groupImports.computeIfAbsent(dep, k -> new HashMap<>());
+			for (int i = 0; i < importsPerDependency; i++) {
+				int g = random.nextInt(groups);
+				String object = exportName(dep, g, random.nextInt(exports));
+				if (!imported.add(object)) continue;
+				int group = depGroups.computeIfAbsent(g, k -> pkg.importObject("Core", "Package", depImport, groupName(k)));
+				pkg.importObject("Engine", "Texture", group, object);
+			}
+		}
+
+		if (random.nextDouble() < missingRate) {
+			pkg.resolvable = false;
+			Integer group = groupImports.values().stream().flatMap(g -> g.values().stream()).findFirst().orElse(null);
+			if (group != null && random.nextBoolean()) {
+				// an object which does not exist, within a package and group that do
+				pkg.importObject("Engine", "Texture", group, String.format("NoSuchTexture%d", random.nextInt(1000)));
+			} else {
+				// a package which does not exist at all
+				String missing = String.format("Missing%04d", random.nextInt(1000));
+				corpus.missingPackages.add(missing);
+				int depImport = pkg.importObject("Core", "Package", 0, missing);
+				pkg.importObject("Engine", "Texture", depImport, "Gone");
+			}
+		}
+
+		return pkg;
+	}
+
+	/**
+	 * Damage an otherwise valid package.
+	 */
+	private static byte[] corrupt(Corruption corruption, GeneratedPackage pkg, Random random) {
+		byte[] bytes = pkg.bytes();
+		ByteBuffer buf = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+		int nameOffset = buf.getInt(16);
+		int importOffset = buf.getInt(32);
+		int exportOffset = buf.getInt(24);
+		switch (corruption) {
+			case GARBAGE -> {
+				random.nextBytes(bytes);
+				// make sure it can never look like a valid package
+				bytes[0] = 0;
+			}
+			case TRUNCATED_HEADER -> bytes = Arrays.copyOf(bytes, Integer.BYTES + random.nextInt(PKG_HEADER_SIZE - Integer.BYTES));
+			case TRUNCATED_TABLES -> bytes = Arrays.copyOf(bytes, nameOffset + 1 + random.nextInt(bytes.length - nameOffset - 1));
+			case NAME_OFFSET -> buf.putInt(16, bytes.length + random.nextInt(1024));
+			case TABLE_OFFSETS -> {
+				buf.putInt(24, random.nextBoolean() ? -1 - random.nextInt(1024) : bytes.length + random.nextInt(1024));
+				buf.putInt(32, random.nextBoolean() ? -1 - random.nextInt(1024) : bytes.length + random.nextInt(1024));
+			}
+			case TABLE_COUNTS -> {
+				// far more rows than the file could hold, while small enough to not exhaust memory if allocated up-front
+				buf.putInt(12, bytes.length * 16 + random.nextInt(1024));
+				buf.putInt(20, bytes.length * 16 + random.nextInt(1024));
+				buf.putInt(28, bytes.length * 16 + random.nextInt(1024));
+			}
+			case BAD_INDEXES -> {
+				// every byte of the import table has the sign, continuation and high bits set, and the
+				// export table refers to names which do not exist
+				Arrays.fill(bytes, importOffset, exportOffset, (byte)0xFF);
+				for (int i = exportOffset; i < bytes.length; i++) {
+					if (random.nextInt(4) == 0) bytes[i] = (byte)(0x40 | random.nextInt(0x40));
+				}
+			}
+		}
+		return bytes;
+	}
+
+	private static double rate(double rate) {
+		if (rate < 0 || rate > 1) throw new IllegalArgumentException("Rates must be between 0 and 1, but got " + rate);
+		return rate;
+	}
+
+	private static String groupName(int group) {
+		return String.format("Group%d", group);
+	}
+
+	private static String exportName(String pkg, int group, int export) {
+		return String.format("%sTex%d_%d", pkg.replaceAll("[^A-Za-z0-9]", ""), group, export);
+	}
+
+	private static byte[] corePackage() {
+		GeneratedPackage pkg = new GeneratedPackage(false);
+		pkg.export(0, 0, "Package");
+		pkg.export(0, 0, "Class");
+		return pkg.bytes();
+	}
+
+	private static byte[] enginePackage() {
+		GeneratedPackage pkg = new GeneratedPackage(false);
+		pkg.export(0, 0, "Texture");
+		return pkg.bytes();
+	}
+
+	private static void writeFile(Path path, byte[] bytes, Corpus corpus) throws IOException {
+		Files.write(path, bytes);
+		corpus.files++;
+	}
+
+	private static void writeUmod(Path dir, Map<String, byte[]> contents, Corpus corpus) throws IOException {
+		contents.put("System\\Manifest.ini", "[Setup]\r\nProduct=Generated\r\n".getBytes(StandardCharsets.US_ASCII));
+
+		Writer out = new Writer();
+		Map<String, int[]> directory = new LinkedHashMap<>();
+		contents.forEach((name, bytes) -> {
+			directory.put(name, new int[] { out.size(), bytes.length });
+			out.bytes(bytes);
+		});
+
+		int dirPos = out.size();
+		out.index(directory.size());
+		directory.forEach((name, pos) -> {
+			out.string(name);
+			out.int32(pos[0]);
+			out.int32(pos[1]);
+			out.int32(0);
+		});
+
+		CRC32 crc = new CRC32();
+		crc.update(out.toByteArray());
+		int totalSize = out.size() + 20;
+		out.int32(UMOD_SIGNATURE);
+		out.int32(dirPos);
+		out.int32(totalSize);
+		out.int32(1);
+		out.int32((int)crc.getValue());
+
+		writeFile(dir.resolve(String.format("Generated%05d.umod", corpus.umods++)), out.toByteArray(), corpus);
+		contents.clear();
+	}
+
+	/**
+	 * A package being generated, with its name, import and export tables.
+	 */
+	private static class GeneratedPackage {
+
+		private final List<String> names = new ArrayList<>();
+		private final Map<String, Integer> nameIndex = new HashMap<>();
+		private final List<int[]> imports = new ArrayList<>();
+		private final List<int[]> exports = new ArrayList<>();
+		private boolean resolvable = true;
+
+		private GeneratedPackage() {
+			this(true);
+		}
+
+		private GeneratedPackage(boolean standardImports) {
+			name("None");
+			if (standardImports) {
+				importObject("Core", "Package", 0, "Core");                  // -1
+				importObject("Core", "Package", 0, "Engine");                // -2
+				importObject("Core", "Class", -2, "Texture");                // -3, IMPORT_TEXTURE_CLASS
+				importObject("Core", "Class", -1, "Package");                // -4, IMPORT_PACKAGE_CLASS
+			}
+		}
+
+		private int name(String name) {
+			return nameIndex.computeIfAbsent(name, n -> {
+				names.add(n);
+				return names.size() - 1;
+			});
+		}
+
+		/**
+		 * @return object reference to the new import
+		 */
+		private int importObject(String classPackage, String className, int packageRef, String objectName) {
+			imports.add(new int[] { name(classPackage), name(className), packageRef, name(objectName) });
+			return -imports.size();
+		}
+
+		/**
+		 * @return object reference to the new export
+		 */
+		private int export(int classRef, int groupRef, String objectName) {
+			exports.add(new int[] { classRef, 0, groupRef, name(objectName) });
+			return exports.size();
+		}
+
+		private byte[] bytes() {
+			Writer body = new Writer();
+			int headerSize = PKG_HEADER_SIZE;
+
+			int nameOffset = headerSize;
+			for (String n : names) {
+				body.string(n);
+				body.int32(NAME_FLAGS);
+			}
+
+			int importOffset = headerSize + body.size();
+			for (int[] i : imports) {
+				body.index(i[0]);
+				body.index(i[1]);
+				body.int32(i[2]);
+				body.index(i[3]);
+			}
+
+			int exportOffset = headerSize + body.size();
+			for (int[] e : exports) {
+				body.index(e[0]);
+				body.index(e[1]);
+				body.int32(e[2]);
+				body.index(e[3]);
+				body.int32(OBJECT_FLAGS);
+				body.index(0); // serial size, no object data
+			}
+
+			Writer out = new Writer();
+			out.int32(PKG_SIGNATURE);
+			out.int16(PKG_VERSION);
+			out.int16(0);
+			out.int32(0x00000001); // allow download
+			out.int32(names.size());
+			out.int32(nameOffset);
+			out.int32(exports.size());
+			out.int32(exportOffset);
+			out.int32(imports.size());
+			out.int32(importOffset);
+			out.bytes(new byte[16]); // guid
+			out.int32(1);            // generations
+			out.int32(exports.size());
+			out.int32(names.size());
+			out.bytes(body.toByteArray());
+
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * Little-endian binary writer, supporting Unreal's compact indexes and
+	 * strings.
+	 */
+	private static class Writer extends ByteArrayOutputStream {
+
+		private void int16(int value) {
+			write(value & 0xFF);
+			write((value >> 8) & 0xFF);
+		}
+
+		private void int32(int value) {
+			int16(value & 0xFFFF);
+			int16((value >> 16) & 0xFFFF);
+		}
+
+		private void bytes(byte[] bytes) {
+			write(bytes, 0, bytes.length);
+		}
+
+		private void index(int value) {
+			int v = Math.abs(value);
+			int first = (value < 0 ? 0x80 : 0) | (v & 0x3F) | (v > 0x3F ? 0x40 : 0);
+			write(first);
+			v >>>= 6;
+			while (v > 0) {
+				int next = v & 0x7F;
+				v >>>= 7;
+				write(next | (v > 0 ? 0x80 : 0));
+			}
+		}
+
+		/**
+		 * A length-prefixed, null-terminated string.
+		 */
+		private void string(String value) {
+			byte[] chars = value.getBytes(StandardCharsets.ISO_8859_1);
+			index(chars.length + 1);
+			bytes(chars);
+			write(0);
+		}
+	}
+
+	/**
+	 * Ways in which corrupt files are damaged.
+	 */
+	public enum Corruption {
+		/**
+		 * Random bytes, without a package signature.
+		 */
+		GARBAGE(true),
+		/**
+		 * A valid signature, but the file ends within the header.
+		 */
+		TRUNCATED_HEADER(true),
+		/**
+		 * The file ends somewhere within the name, import or export tables.
+		 */
+		TRUNCATED_TABLES(false),
+		/**
+		 * The name table is beyond the end of the file.
+		 */
+		NAME_OFFSET(true),
+		/**
+		 * The import and export tables are before the start or beyond the
+		 * end of the file.
+		 */
+		TABLE_OFFSETS(false),
+		/**
+		 * Name, import and export counts far exceed the size of the file.
+		 */
+		TABLE_COUNTS(false),
+		/**
+		 * Import and export tables contain malformed compact indexes, and
+		 * references to names which do not exist.
+		 */
+		BAD_INDEXES(false);
+
+		/**
+		 * Whether reading the file must fail. Other corruptions may only be
+		 * detected once the affected tables are read, and must not prevent
+		 * other packages from being read and resolved.
+		 */
+		public final boolean mustFail;
+
+		Corruption(boolean mustFail) {
+			this.mustFail = mustFail;
+		}
+	}
+
+	/**
+	 * Description of a generated corpus.
+	 */
+	public static class Corpus {
+
+		public final Path root;
+
+		/**
+		 * Names of all generated packages (excluding corrupt files and
+		 * collisions), and whether they are expected to resolve completely.
+		 */
+		public final Map<String, Boolean> expected = new LinkedHashMap<>();
+
+		/**
+		 * Names of packages imported which are not part of the corpus.
+		 */
+		public final Set<String> missingPackages = new TreeSet<>();
+
+		/**
+		 * Names of corrupt files, without extensions, and how they were
+		 * damaged.
+		 */
+		public final Map<String, Corruption> corrupted = new LinkedHashMap<>();
+
+		public int files;
+		public int umods;
+		public int collisions;
+		public int corrupt;
+
+		private Corpus(Path root) {
+			this.root = root;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Corpus [root=%s, packages=%d, files=%d, umods=%d, collisions=%d, corrupt=%d]",
+								 root, expected.size(), files, umods, collisions, corrupt);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package net.shrimpworks.unreal.dependencies;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DependencyGraphTest {
+
+	private static DependencyGraph sample() {
+		return new DependencyGraph.Builder()
+			.add("Core").add("Engine").add("Botpack").add("CTF-Face").add("DM-Deck16][").add("CycleA").add("CycleB")
+			.add("Engine", Set.of("Core"))
+			.add("Botpack", Set.of("Core", "Engine"))
+			.add("CTF-Face", Set.of("Engine", "Botpack", "FaceTextures"))
+			.add("DM-Deck16][", Set.of("Engine", "CycleA"))
+			.add("CycleA", Set.of("CycleB", "Engine"))
+			.add("CycleB", Set.of("cyclea"))
+			.build();
+	}
+
+	@Test
+	public void buildGraph() {
+		DependencyGraph graph = sample();
+		assertEquals(8, graph.size());
+		assertEquals(11, graph.edges());
+
+		int engine = graph.node("ENGINE");
+		assertArrayEquals(new int[] { graph.node("Core") }, graph.dependencies(engine));
+		assertEquals(4, graph.dependantCount(engine));
+
+		assertTrue(graph.missing(graph.node("FaceTextures")));
+		assertFalse(graph.missing(graph.node("Botpack")));
+		assertEquals(NameTable.NOT_FOUND, graph.node("Unknown"));
+	}
+
+	@Test
+	public void analyseGraph() {
+		DependencyGraph graph = sample();
+		DependencyGraph.Analysis analysis = graph.analyse(2);
+
+		assertArrayEquals(new int[] { graph.node("Engine"), graph.node("Core") }, analysis.mostDependedUpon);
+		assertArrayEquals(new int[] { graph.node("CTF-Face"), graph.node("DM-Deck16][") }, analysis.orphans);
+		assertArrayEquals(new int[] { graph.node("FaceTextures") }, analysis.missing);
+
+		assertEquals(1, analysis.circular.size());
+		int[] cycle = analysis.circular.get(0);
+		Arrays.sort(cycle);
+		assertArrayEquals(new int[] { graph.node("CycleA"), graph.node("CycleB") }, cycle);
+	}
+
+	@Test
+	public void mapClosure() {
+		DependencyGraph graph = sample();
+		BitSet required = graph.closure(List.of("DM-Deck16]["));
+		assertEquals(5, required.cardinality());
+		assertTrue(required.get(graph.node("CycleB")));
+		assertFalse(required.get(graph.node("Botpack")));
+
+		assertEquals(8, graph.closure(List.of("DM-Deck16][", "CTF-Face", "NotAPackage")).cardinality());
+	}
+
+	@Test
+	public void exportGraph() throws IOException {
+		DependencyGraph graph = sample();
+
+		StringBuilder dot = new StringBuilder();
+		graph.writeDot(dot);
+		assertTrue(dot.toString().startsWith("digraph"));
+		assertTrue(dot.toString().contains("label=\"FaceTextures\", style=dashed"));
+
+		StringBuilder graphMl = new StringBuilder();
+		graph.writeGraphML(graphMl);
+		assertTrue(graphMl.toString().contains("<data key=\"name\">DM-Deck16][</data>"));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		graph.write(bytes);
+		DependencyGraph read = DependencyGraph.read(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(graph.toString(), read.toString());
+		for (int n = 0; n < graph.size(); n++) {
+			assertEquals(graph.name(n), read.name(n));
+			assertArrayEquals(graph.dependencies(n), read.dependencies(n));
+			assertArrayEquals(graph.dependants(n), read.dependants(n));
+		}
+	}
+
+	@Test
+	public void mostDependedUpon() {
+		DependencyGraph.Builder builder = new DependencyGraph.Builder();
+		for (int i = 0; i < 500; i++) builder.add("Pkg" + i);
+		for (int i = 0; i < 500; i++) {
+			// lower numbered packages have more dependants, with many ties
+			builder.add("Pkg" + i, IntStream.range(0, (i * 7) % 40).mapToObj(d -> "Pkg" + (d / 3)).collect(Collectors.toSet()));
+		}
+		DependencyGraph graph = builder.build();
+
+		int[] expected = IntStream.range(0, graph.size()).boxed()
+								  .sorted((a, b) -> {
+									  int res = Integer.compare(graph.dependantCount(b), graph.dependantCount(a));
+									  return res != 0 ? res : Integer.compare(a, b);
+								  })
+								  .mapToInt(Integer::intValue)
+								  .toArray();
+		for (int limit : new int[] { 0, 1, 5, 13, 499, 500, 1000 }) {
+			assertArrayEquals(Arrays.copyOf(expected, Math.min(limit, expected.length)), graph.mostDependedUpon(limit), "limit " + limit);
+		}
+	}
+
+	@Test
+	public void readInvalidGraph() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		sample().write(bytes);
+		byte[] valid = bytes.toByteArray();
+
+		// the 8 nodes and 11 edges follow the names, ending with the edges
+		int edges = valid.length - 11 * Integer.BYTES;
+		int offsets = edges - 9 * Integer.BYTES;
+
+		assertThrows(IOException.class, () -> read(valid, 8, -1));                 // negative size
+		assertThrows(IOException.class, () -> read(valid, 12, 9));                 // more known than size
+		assertThrows(IOException.class, () -> read(valid, offsets + 8 * Integer.BYTES, -4)); // negative edge count
+		assertThrows(IOException.class, () -> read(valid, offsets + 4 * Integer.BYTES, 0));  // offsets decreasing
+		assertThrows(IOException.class, () -> read(valid, edges, 8));              // target out of range
+		assertThrows(IOException.class, () -> read(valid, edges + Integer.BYTES, -1));
+
+		// names differing only by case
+		DataOutputStream data = new DataOutputStream(bytes = new ByteArrayOutputStream());
+		data.writeInt(0x55504447);
+		data.writeInt(1);
+		data.writeInt(2);
+		data.writeInt(2);
+		data.writeUTF("Botpack");
+		data.writeUTF("BOTPACK");
+		data.writeInt(0);
+		data.writeInt(0);
+		data.writeInt(0);
+		byte[] duplicates = bytes.toByteArray();
+		assertThrows(IOException.class, () -> DependencyGraph.read(new ByteArrayInputStream(duplicates)));
+	}
+
+	private static DependencyGraph read(byte[] valid, int pos, int value) throws IOException {
+		byte[] bytes = valid.clone();
+		ByteBuffer.wrap(bytes).putInt(pos, value);
+		return DependencyGraph.read(new ByteArrayInputStream(bytes));
+	}
+}
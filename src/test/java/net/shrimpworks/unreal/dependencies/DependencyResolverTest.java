@@ -2,11 +2,14 @@ package net.shrimpworks.unreal.dependencies;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.IntStream;
 import java.util.zip.GZIPInputStream;
 
 import org.junit.jupiter.api.AfterAll;
@@ -14,8 +17,11 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class DependencyResolverTest {
@@ -53,6 +59,115 @@ public class DependencyResolverTest {
 		assertFalse(resolve.get("SoccerScores").stream().allMatch(Resolved::resolved));
 	}
 
+	@Test
+	public void indexExports() throws IOException {
+		DependencyResolver resolver = new DependencyResolver(unrMap.getParent(), new NativePackages());
+		ExportIndex index = resolver.exports();
+
+		assertFalse(index.prefix("scr-citystreet.").isEmpty());
+		assertTrue(index.entries().stream().allMatch(e -> e.packageName.equals("SCR-CityStreet")));
+		assertFalse(index.named("LevelInfo0").isEmpty());
+	}
+
+	@Test
+	public void resolverDoesNotRetainNames() throws IOException {
+		int sharedNames = NameTable.DEFAULT.size();
+		DependencyResolver resolver = new DependencyResolver(unrMap.getParent());
+		resolver.resolve("SCR-CityStreet");
+
+		// archive package names must not accumulate in the shared table
+		assertEquals(sharedNames, NameTable.DEFAULT.size());
+		assertEquals(NameTable.NOT_FOUND, NameTable.DEFAULT.lookup("SCR-CityStreet"));
+		assertEquals(1, resolver.findPackages("scr-citystreet").size());
+	}
+
+	@Test
+	public void findPackagesDoesNotAllocate() throws IOException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().threadId();
+
+		DependencyResolver resolver = new DependencyResolver(unrMap.getParent(), new NativePackages(new NameTable()));
+		String[] packages = { "SCR-CityStreet", "scr-citystreet", "SoccerScores", "Engine" };
+
+		// warm up, so we're measuring compiled code
+		int found = 0;
+		for (int i = 0; i < 200_000; i++) found += resolver.findPackages(packages[i % 4]).size();
+
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < 1_000_000; i++) found += resolver.findPackages(packages[i % 4]).size();
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+		assertTrue(found > 0);
+		assertTrue(allocated < 64 * 1024, String.format("Expected no allocation, but %d bytes were allocated", allocated));
+	}
+
+	@Test
+	public void resolveAllocation() throws IOException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().threadId();
+
+		DependencyResolver resolver = new DependencyResolver(unrMap.getParent(), new NativePackages(new NameTable()));
+		UnrealPackage pkg = resolver.findPackage("SCR-CityStreet");
+
+		// warm up, so we're measuring compiled code
+		for (int i = 0; i < 2_000; i++) resolver.resolve(pkg);
+
+		int nodes = 0;
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < 1_000; i++) nodes += count(resolver.resolve(pkg));
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+		// the result tree itself must be allocated, along with whatever the package reader allocates
+		// while walking imports and exports; this bounds the total, while findPackagesDoesNotAllocate
+		// checks the name lookups made by resolve precisely
+		assertTrue(nodes > 0);
+		assertTrue(allocated / nodes < 2048, String.format("Expected at most 2048 bytes per resolved node, but %d were allocated",
+															 allocated / nodes));
+	}
+
+	@Test
+	public void dependencyGraph() throws IOException {
+		DependencyResolver resolver = new DependencyResolver(unrMap.getParent(), new NativePackages());
+		DependencyGraph graph = resolver.graph();
+		int map = graph.node("SCR-CityStreet");
+		assertFalse(graph.missing(map));
+		assertTrue(graph.missing(graph.node("SoccerScores")));
+		assertTrue(IntStream.of(graph.dependencies(map)).anyMatch(n -> n == graph.node("SoccerScores")));
+		assertArrayEquals(new int[] { map }, graph.orphans());
+	}
+
+	@Test
+	public void bundleMap() throws IOException {
+		DependencyResolver resolver = new DependencyResolver(unrMap.getParent(), new NativePackages());
+		Bundle bundle = resolver.bundle(List.of(resolver.findPackage("SCR-CityStreet")), n -> false);
+		assertEquals(Set.of(unrMap), bundle.files());
+		assertTrue(bundle.missing.contains("SoccerScores"));
+
+		Bundle excluded = resolver.bundle(List.of(resolver.findPackage("SCR-CityStreet")), n -> n.equalsIgnoreCase("soccerscores"));
+		assertFalse(excluded.missing.contains("SoccerScores"));
+
+		StringBuilder manifest = new StringBuilder();
+		bundle.writeManifest(manifest, tmpDir);
+		assertTrue(manifest.toString().contains("SCR-CityStreet=SCR-CityStreet.unr\n"));
+		assertTrue(manifest.substring(manifest.indexOf("[missing]")).contains("\nSoccerScores\n"));
+	}
+
+	@Test
+	public void bundleSameNamedFile() throws IOException {
+		// a copy of the map outside the search path is bundled itself, rather than the map sharing its name
+		Path otherDir = Files.createTempDirectory("deps-other");
+		Path otherMap = Files.copy(unrMap, otherDir.resolve(unrMap.getFileName()));
+		try {
+			DependencyResolver resolver = new DependencyResolver(unrMap.getParent(), new NativePackages());
+			Bundle bundle = resolver.bundle(List.of(new UnrealPackage(otherMap)), n -> false);
+			assertEquals(Set.of(otherMap), bundle.files());
+			assertTrue(bundle.missing.contains("SoccerScores"));
+		} finally {
+			Files.deleteIfExists(otherMap);
+			Files.deleteIfExists(otherDir);
+		}
+	}
+
 	@Test
 	public void resolveUmodDependencies() throws IOException {
 		// unpack a test mod to a temporary location
@@ -66,8 +181,27 @@ public class DependencyResolverTest {
 
 			Map<String, Set<Resolved>> resolve = resolver.resolve("DropStuff");
 			assertFalse(resolve.get("Botpack").isEmpty());
+
+			Bundle bundle = resolver.bundle(List.of(resolver.findPackage("DropStuff")), ShippedPackages.UNREAL_TOURNAMENT::contains);
+			assertEquals(Set.of(tmpMod), bundle.files());
+			assertNotNull(bundle.packages.get(0).umodFile);
+			assertFalse(bundle.missing.contains("Botpack"));
 		} finally {
 			Files.deleteIfExists(tmpMod);
 		}
 	}
+
+	private static int count(Map<String, Set<Resolved>> resolved) {
+		int count = 0;
+		for (Set<Resolved> r : resolved.values()) {
+			for (Resolved child : r) count += count(child);
+		}
+		return count;
+	}
+
+	private static int count(Resolved resolved) {
+		int count = 1;
+		for (Resolved child : resolved.children) count += count(child);
+		return count;
+	}
 }
@@ -0,0 +1,66 @@
+package net.shrimpworks.unreal.dependencies;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExportIndexTest {
+
+	private static ExportIndex sample() {
+		return new ExportIndex.Builder()
+			.add("Botpack", "Ripper", "Class")
+			.add("Botpack", "Skins", "Package")
+			.add("Botpack", "Skins.Ripper", "Texture")
+			.add("Botpack", "Skins.Minigun", "Texture")
+			.add("UnrealShare", "Ripper", "Class")
+			.add("NewSkins", "Weapons.Ripper", "Texture")
+			.build();
+	}
+
+	@Test
+	public void findExports() {
+		ExportIndex index = sample();
+		assertEquals(6, index.size());
+
+		assertEquals(1, index.exact("Botpack.Skins.Ripper").size());
+		assertTrue(index.exact("botpack.skins.ripper").isEmpty());
+
+		assertEquals(1, index.find("botpack.skins.ripper").size());
+		assertEquals("Texture", index.find("BOTPACK.SKINS.RIPPER").get(0).className);
+		assertTrue(index.find("Botpack.Skin").isEmpty());
+
+		assertEquals(2, index.prefix("botpack.skins.").size());
+		assertEquals(4, index.prefix("Botpack.").size());
+		assertTrue(index.prefix("Botpack.Sounds.").isEmpty());
+
+		assertEquals(4, index.named("ripper").size());
+		assertEquals("Minigun", index.named("MINIGUN").get(0).name());
+	}
+
+	@Test
+	public void suggestAlternatives() {
+		ExportIndex index = sample();
+
+		// a texture imported from a package which no longer provides it
+		assertEquals(2, index.suggest("OldSkins.Skins.Ripper", "Texture").size());
+
+		// don't suggest exports from the package already requested
+		assertEquals(1, index.suggest("Botpack.Weapons.Ripper", "Texture").size());
+		assertEquals("NewSkins.Weapons.Ripper", index.suggest("Botpack.Weapons.Ripper", "Texture").get(0).path);
+
+		// class must match
+		assertTrue(index.suggest("OldSkins.Skins.Ripper", "Sound").isEmpty());
+		assertEquals(2, index.suggest("Old.Ripper", "class").size());
+	}
+
+	@Test
+	public void noSuggestionsForGroups() {
+		ExportIndex index = sample();
+
+		// an unresolved group import would otherwise match same-named groups everywhere
+		assertEquals(1, index.named("Skins").size());
+		assertTrue(index.suggest("OldSkins.Skins", "Package").isEmpty());
+		assertTrue(index.suggest("OldSkins.Skins", "package").isEmpty());
+	}
+}
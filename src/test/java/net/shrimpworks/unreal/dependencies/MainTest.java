@@ -0,0 +1,105 @@
+package net.shrimpworks.unreal.dependencies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MainTest {
+
+	@Test
+	public void checkResults() {
+		Checker checker = new TestChecker();
+
+		Result good = Result.check(checker, "Good");
+		assertNull(good.failure);
+		assertTrue(good.ok());
+
+		Result missing = Result.check(checker, "Missing");
+		assertEquals("Could not find package with name Missing", missing.failure);
+		assertFalse(missing.ok());
+
+		Result overflow = Result.check(checker, "Overflow");
+		assertNotNull(overflow.failure);
+		assertFalse(overflow.ok());
+
+		// errors unrelated to the package are not swallowed
+		assertThrows(OutOfMemoryError.class, () -> Result.check(checker, "OutOfMemory"));
+	}
+
+	@Test
+	public void checkConcurrently() throws InterruptedException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		int exitCode = Main.check(new TestChecker(), List.of("Good", "Missing", "Other", "Overflow", "Unprintable", "Last"),
+								  4, Main.Verbosity.ALL, true, 0, new PrintStream(bytes, true));
+		String out = bytes.toString();
+
+		assertEquals(1, exitCode);
+		assertTrue(out.contains("Checked 6 packages"), out);
+		assertTrue(out.contains("3 ok, 0 unresolved, 3 failed"), out);
+
+		// results are printed in the order requested, regardless of failures
+		assertTrue(out.indexOf("Good") < out.indexOf("Missing: Could not find package"), out);
+		assertTrue(out.indexOf("Missing: Could not find package") < out.indexOf("Other"), out);
+		assertTrue(out.indexOf("Other") < out.indexOf("Overflow:"), out);
+		assertTrue(out.indexOf("Overflow:") < out.indexOf("Unprintable:"), out);
+		assertTrue(out.indexOf("Unprintable:") < out.indexOf("Last"), out);
+
+		ByteArrayOutputStream okBytes = new ByteArrayOutputStream();
+		assertEquals(0, Main.check(new TestChecker(), List.of("Good", "Other"), 1, Main.Verbosity.ALL, true, 0,
+								   new PrintStream(okBytes, true)));
+		assertTrue(okBytes.toString().contains("2 ok, 0 unresolved, 0 failed"), okBytes.toString());
+	}
+
+	@Test
+	public void checkErrors() {
+		assertThrows(OutOfMemoryError.class, () -> Main.check(new TestChecker(), List.of("Good", "OutOfMemory"), 2,
+															   Main.Verbosity.ALL, true, 0, new PrintStream(new ByteArrayOutputStream())));
+	}
+
+	/**
+	 * A checker which fails in various ways according to the requested
+	 * package's name.
+	 */
+	private static class TestChecker implements Checker {
+
+		@Override
+		public UnrealPackage findPackage(String nameOrPath) throws IOException {
+			return switch (nameOrPath) {
+				case "Missing" -> throw new NoSuchElementException("Could not find package with name " + nameOrPath);
+				case "OutOfMemory" -> throw new OutOfMemoryError("Java heap space");
+				default -> new UnrealPackage(nameOrPath, null);
+			};
+		}
+
+		@Override
+		public Map<String, Set<Resolved>> resolve(UnrealPackage pkg) {
+			if (pkg.name.equals("Overflow")) throw new StackOverflowError();
+			if (pkg.name.equals("Unprintable")) {
+				// resolves, but can not be printed
+				Map<String, Set<Resolved>> resolved = new HashMap<>();
+				resolved.put("Core", null);
+				return resolved;
+			}
+			return Map.of();
+		}
+
+		@Override
+		public List<ExportIndex.Entry> suggest(String importPath, String className) {
+			return List.of();
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package net.shrimpworks.unreal.dependencies;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NameTableTest {
+
+	@Test
+	public void internNames() {
+		NameTable names = new NameTable();
+		int botpack = names.intern("Botpack");
+
+		assertEquals(botpack, names.intern("BOTPACK"));
+		assertEquals(botpack, names.lookup("botpack"));
+		assertEquals("Botpack", names.name(botpack));
+		assertNotEquals(botpack, names.intern("Botpack2"));
+		assertEquals(NameTable.NOT_FOUND, names.lookup("UnrealShare"));
+		assertEquals(2, names.size());
+	}
+
+	@Test
+	public void growTable() {
+		NameTable names = new NameTable();
+		for (int i = 0; i < 50_000; i++) {
+			assertEquals(i, names.intern("Name" + i));
+		}
+		for (int i = 0; i < 50_000; i++) {
+			assertEquals(i, names.lookup("NAME" + i));
+		}
+		assertEquals(50_000, names.size());
+	}
+
+	@Test
+	public void lookupsDoNotAllocate() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().threadId();
+
+		NativePackages nativePackages = new NativePackages(new NameTable());
+		String[] packages = { "ENGINE", "engine", "Core", "NotNative" };
+		String[] classes = { "LEVEL", "level", "NotAClass", "Level" };
+
+		// warm up, so we're measuring compiled code
+		int found = 0;
+		for (int i = 0; i < 200_000; i++) found += lookup(nativePackages, packages[i % 4], classes[i % 4]);
+
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < 1_000_000; i++) found += lookup(nativePackages, packages[i % 4], classes[i % 4]);
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+		assertTrue(found > 0);
+		// lower-casing would produce tens of megabytes here; allow a little for measurement noise
+		assertTrue(allocated < 64 * 1024, String.format("Expected no allocation, but %d bytes were allocated", allocated));
+	}
+
+	private static int lookup(NativePackages nativePackages, String pkg, String cls) {
+		NativePackages.NativePackage nativePackage = nativePackages.get(pkg);
+		return nativePackage != null && nativePackage.contains(cls) ? 1 : 0;
+	}
+}
@@ -0,0 +1,166 @@
+package net.shrimpworks.unreal.dependencies;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies indexing and resolution against a generated corpus.
+ * <p>
+ * The corpus size defaults to something quick enough for routine test runs,
+ * and may be increased for benchmarking, eg.:
+ * <code>gradle test --tests '*ResolverScaleTest' -Dcorpus.packages=100000</code>
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ResolverScaleTest {
+
+	private static final int PACKAGES = Integer.getInteger("corpus.packages", 500);
+	private static final long SEED = Long.getLong("corpus.seed", 1);
+
+	private Path tmpDir;
+	private CorpusGenerator.Corpus corpus;
+	private DependencyResolver resolver;
+	private final List<DependencyResolver.ResolutionException> failures = new ArrayList<>();
+
+	@BeforeAll
+	public void setup() throws IOException {
+		tmpDir = Files.createTempDirectory("deps-corpus");
+
+		long genStart = System.nanoTime();
+		corpus = new CorpusGenerator().seed(SEED)
+									  .packages(PACKAGES)
+									  .maps(Math.max(1, PACKAGES / 10))
+									  .generate(tmpDir);
+		long genTime = System.nanoTime() - genStart;
+
+		long indexStart = System.nanoTime();
+		resolver = new DependencyResolver(tmpDir, new NativePackages(), failures::add);
+		long indexTime = System.nanoTime() - indexStart;
+
+		System.out.printf("%s: generated in %dms, indexed in %dms (%.0f files/s)%n", corpus, genTime / 1_000_000,
+						  indexTime / 1_000_000, corpus.files / (indexTime / 1_000_000_000d));
+	}
+
+	@AfterAll
+	public void teardown() throws IOException {
+		CorpusGenerator.delete(tmpDir);
+	}
+
+	@Test
+	public void indexCorpus() {
+		Set<String> failed = failures.stream()
+									 .map(f -> UnrealPackage.plainName(f.file))
+									 .collect(Collectors.toSet());
+
+		// only corrupt files are reported, including all those which can't possibly be read
+		assertTrue(corpus.corrupted.keySet().containsAll(failed), failed.toString());
+		corpus.corrupted.forEach((name, corruption) -> {
+			if (corruption.mustFail) assertTrue(failed.contains(name), String.format("%s (%s) was not reported", name, corruption));
+		});
+		assertEquals(Set.of(CorpusGenerator.Corruption.values()), Set.copyOf(corpus.corrupted.values()));
+
+		System.out.printf("Reported %d of %d corrupt files: %s%n", failed.size(), corpus.corrupt, corpus.corrupted.entrySet().stream()
+			.collect(Collectors.groupingBy(Map.Entry::getValue, Collectors.mapping(e -> failed.contains(e.getKey()), Collectors.toList()))));
+
+		// colliding names, differing only by case, are found as one package
+		for (String name : corpus.expected.keySet()) {
+			assertFalse(resolver.findPackages(name).isEmpty(), name);
+			assertFalse(resolver.findPackages(name.toUpperCase()).isEmpty(), name);
+		}
+	}
+
+	@Test
+	public void exportCorpus() throws IOException {
+		// corrupt packages which were read but can not be indexed are reported, without preventing the index being built
+		ExportIndex exports = resolver.exports();
+		Set<String> failed = failures.stream()
+									 .map(f -> UnrealPackage.plainName(f.file))
+									 .collect(Collectors.toSet());
+		assertTrue(corpus.corrupted.keySet().containsAll(failed), failed.toString());
+		for (String name : corpus.expected.keySet()) assertFalse(exports.prefix(name + ".").isEmpty(), name);
+
+		Path snapshotFile = Files.createTempFile("snapshot-", ".bin");
+		snapshotFile.toFile().deleteOnExit();
+		ResolverSnapshot.write(resolver, snapshotFile);
+		ResolverSnapshot snapshot = ResolverSnapshot.open(snapshotFile);
+		assertEquals(exports.size(), snapshot.exportCount());
+		for (String name : corpus.expected.keySet()) {
+			assertTrue(snapshot.contains(name), name);
+			assertEquals(exports.prefix(name + ".").size(), snapshot.prefix(name + ".").size(), name);
+		}
+	}
+
+	@Test
+	public void generatorSettings() throws IOException {
+		assertThrows(IllegalArgumentException.class, () -> new CorpusGenerator().exports(0, 5));
+		assertThrows(IllegalArgumentException.class, () -> new CorpusGenerator().exports(2, 0));
+		assertThrows(IllegalArgumentException.class, () -> new CorpusGenerator().imports(-1, 1));
+		assertThrows(IllegalArgumentException.class, () -> new CorpusGenerator().missing(1.5));
+		assertThrows(IllegalArgumentException.class, () -> new CorpusGenerator().corrupt(-0.1));
+
+		// packages with dependencies but no imported objects may still import things which are missing
+		Path dir = Files.createTempDirectory("deps-corpus");
+		try {
+			CorpusGenerator.Corpus small = new CorpusGenerator().packages(20).maps(2).imports(2, 0).missing(1).corrupt(0.5)
+																.generate(dir);
+			assertTrue(small.expected.entrySet().stream()
+									 .filter(e -> e.getKey().startsWith("Lib") || e.getKey().startsWith("DM-"))
+									 .noneMatch(Map.Entry::getValue));
+			assertEquals(11, small.corrupt);
+		} finally {
+			CorpusGenerator.delete(dir);
+		}
+	}
+
+	@Test
+	public void resolveCorpus() {
+		long start = System.nanoTime();
+		corpus.expected.forEach((name, expected) -> {
+			Map<String, Set<Resolved>> resolved = resolver.resolve(name);
+			boolean ok = resolved.values().stream().flatMap(Set::stream).allMatch(Resolved::resolved)
+						 && resolved.values().stream().noneMatch(Set::isEmpty);
+			assertEquals(expected, ok, name);
+		});
+		long time = System.nanoTime() - start;
+
+		System.out.printf("Resolved %d packages in %dms (%.0f packages/s)%n", corpus.expected.size(), time / 1_000_000,
+						  corpus.expected.size() / (time / 1_000_000_000d));
+	}
+
+	@Test
+	public void graphCorpus() {
+		long start = System.nanoTime();
+		DependencyGraph graph = resolver.graph();
+		DependencyGraph.Analysis analysis = graph.analyse(10);
+		long time = System.nanoTime() - start;
+
+		System.out.printf("Built and analysed %s in %dms%n", graph, time / 1_000_000);
+
+		// corrupt files which could still be read are also part of the graph
+		for (String name : corpus.expected.keySet()) {
+			assertNotEquals(NameTable.NOT_FOUND, graph.node(name), name);
+			assertFalse(graph.missing(graph.node(name)), name);
+		}
+		for (String name : corpus.missingPackages) assertTrue(graph.missing(graph.node(name)), name);
+		assertTrue(graph.size() >= corpus.expected.size() + corpus.missingPackages.size());
+		// every generated package depends on Core and Engine
+		assertEquals(Set.of("Core", "Engine"), Set.of(graph.name(analysis.mostDependedUpon[0]),
+													  graph.name(analysis.mostDependedUpon[1])));
+	}
+}
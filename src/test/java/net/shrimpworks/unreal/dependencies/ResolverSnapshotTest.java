@@ -0,0 +1,165 @@
+package net.shrimpworks.unreal.dependencies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResolverSnapshotTest {
+
+	@Test
+	public void snapshotLookups() throws IOException {
+		List<UnrealPackage> packages = List.of(
+			new UnrealPackage("Botpack", null, Paths.get("System", "Botpack.u"), null),
+			new UnrealPackage("DropStuff", null, Paths.get("DropStuff.umod"), "System\\DropStuff.u"),
+			new UnrealPackage("CTF-Face", null, Paths.get("Maps", "CTF-Face.unr"), null)
+		);
+		ExportIndex exports = new ExportIndex.Builder()
+			.add("Botpack", "Ripper", "Class")
+			.add("Botpack", "Skins", "Package")
+			.add("Botpack", "Skins.Ripper", "Texture")
+			.add("Botpack", "Skins.Minigun", "Texture")
+			.add("DropStuff", "DropStuff", "Class")
+			.add("CTF-Face", "MyLevel", "Level")
+			.build();
+
+		Path tmpFile = snapshotFile();
+		try (OutputStream out = Files.newOutputStream(tmpFile)) {
+			ResolverSnapshot.write(Paths.get("game"), packages, exports, new NativePackages(), out);
+		}
+
+		ResolverSnapshot snapshot = ResolverSnapshot.open(tmpFile);
+		assertEquals(Paths.get("game").toAbsolutePath(), snapshot.rootPath());
+		assertEquals(3, snapshot.packageCount());
+		assertEquals(6, snapshot.exportCount());
+
+		assertTrue(snapshot.contains("BOTPACK"));
+		assertFalse(snapshot.contains("Botpack2"));
+		assertFalse(snapshot.contains("Bot"));
+		ResolverSnapshot.PackageSource dropStuff = snapshot.findPackages("dropstuff").get(0);
+		assertEquals(Paths.get("DropStuff.umod"), dropStuff.path);
+		assertEquals("System\\DropStuff.u", dropStuff.umodFile);
+		assertNull(snapshot.findPackages("Botpack").get(0).umodFile);
+
+		assertTrue(snapshot.containsExport("botpack.skins.RIPPER"));
+		assertFalse(snapshot.containsExport("botpack.skin"));
+		assertEquals("Botpack.Skins.Ripper", snapshot.find("BOTPACK.SKINS.RIPPER").get(0).path);
+		assertEquals("Texture", snapshot.find("BOTPACK.SKINS.RIPPER").get(0).className);
+		assertEquals(2, snapshot.prefix("botpack.skins.").size());
+		assertEquals(4, snapshot.prefix("Botpack.").size());
+		assertTrue(snapshot.prefix("Botpack.Sounds.").isEmpty());
+		assertEquals(2, snapshot.named("ripper").size());
+		assertEquals("Minigun", snapshot.named("MINIGUN").get(0).name());
+		assertEquals(exports.named("Ripper").stream().map(e -> e.path).collect(Collectors.toSet()),
+					 snapshot.named("Ripper").stream().map(e -> e.path).collect(Collectors.toSet()));
+
+		assertEquals(1, snapshot.suggest("OldSkins.Skins.Ripper", "texture").size());
+		assertTrue(snapshot.suggest("OldSkins.Skins", "Package").isEmpty());
+
+		assertTrue(snapshot.nativeClass("ENGINE", "level"));
+		assertFalse(snapshot.nativeClass("Core", "Level"));
+	}
+
+	@Test
+	public void snapshotStartup() throws IOException {
+		Path tmpDir = Files.createTempDirectory("deps-corpus");
+		Path tmpFile = snapshotFile();
+		try {
+			CorpusGenerator.Corpus corpus = new CorpusGenerator().seed(1).packages(500).maps(50).generate(tmpDir);
+
+			long walkStart = System.nanoTime();
+			DependencyResolver resolver = new DependencyResolver(tmpDir, new NativePackages(), e -> {});
+			resolver.exports();
+			long walkTime = System.nanoTime() - walkStart;
+
+			ResolverSnapshot.write(resolver, tmpFile);
+
+			long loadStart = System.nanoTime();
+			ResolverSnapshot snapshot = ResolverSnapshot.open(tmpFile);
+			long loadTime = System.nanoTime() - loadStart;
+
+			assertEquals(tmpDir.toAbsolutePath(), snapshot.rootPath());
+			try (Stream<Path> files = Files.list(tmpFile.getParent())) {
+				// the temporary file written to was moved into place
+				assertTrue(files.noneMatch(f -> !f.equals(tmpFile) && f.getFileName().toString().startsWith(tmpFile.getFileName().toString())));
+			}
+
+			System.out.printf("%s startup: full walk %.2fms, snapshot load %.2fms (%d exports)%n",
+							  corpus, walkTime / 1_000_000d, loadTime / 1_000_000d, snapshot.exportCount());
+
+			assertEquals(resolver.exports().size(), snapshot.exportCount());
+			assertTrue(loadTime < walkTime);
+
+			// resolution from the snapshot must agree with the full resolver
+			corpus.expected.keySet().forEach(name -> {
+				assertTrue(snapshot.contains(name), name);
+				UnrealPackage pkg = resolver.findPackage(name);
+				Map<String, Set<Resolved>> expected = resolver.resolve(pkg);
+				Map<String, Set<Resolved>> actual = snapshot.resolve(pkg);
+				assertEquals(expected.keySet(), actual.keySet(), name);
+				expected.forEach((k, v) -> assertEquals(v.stream().allMatch(Resolved::resolved),
+														actual.get(k).stream().allMatch(Resolved::resolved), name + ": " + k));
+			});
+		} finally {
+			CorpusGenerator.delete(tmpDir);
+		}
+	}
+
+	@Test
+	public void invalidSnapshots() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ResolverSnapshot.write(null, List.of(new UnrealPackage("Botpack", null, Paths.get("Botpack.u"), null)),
+							   new ExportIndex.Builder().add("Botpack", "Ripper", "Class").build(), new NativePackages(), bytes);
+		byte[] valid = bytes.toByteArray();
+
+		assertNull(ResolverSnapshot.open(snapshotFile(valid)).rootPath());
+
+		assertThrows(IOException.class, () -> ResolverSnapshot.open(snapshotFile(Arrays.copyOf(valid, 20))));
+		assertThrows(IOException.class, () -> ResolverSnapshot.open(snapshotFile(Arrays.copyOf(valid, valid.length - 2))));
+		for (int field : new int[] { 8, 12, 16, 20, 24, 28, 32, 36, 40, 44 }) {
+			assertThrows(IOException.class, () -> ResolverSnapshot.open(snapshotFile(with(valid, field, 1_000_000))), "field " + field);
+		}
+		assertThrows(IOException.class, () -> ResolverSnapshot.open(snapshotFile(with(valid, 16, -1))));
+		assertThrows(IOException.class, () -> ResolverSnapshot.open(snapshotFile(with(valid, 12, 4))));
+	}
+
+	private static byte[] with(byte[] valid, int pos, int value) {
+		byte[] bytes = valid.clone();
+		ByteBuffer.wrap(bytes).putInt(pos, value);
+		return bytes;
+	}
+
+	private static Path snapshotFile(byte[] contents) throws IOException {
+		Path file = snapshotFile();
+		Files.write(file, contents);
+		return file;
+	}
+
+	/**
+	 * A temporary file for a snapshot. Since a mapped snapshot can't be
+	 * deleted on some platforms until it has been garbage collected, it is
+	 * only deleted on exit.
+	 */
+	private static Path snapshotFile() throws IOException {
+		Path file = Files.createTempFile("snapshot-", ".bin");
+		file.toFile().deleteOnExit();
+		return file;
+	}
+}